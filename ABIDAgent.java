@@ -1,105 +1,65 @@
-import java.util.HashMap;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Random;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Iteritive deepening Alpha-Beta Pruning search with memory for Mancala
  * 
  * OOP version for passing results
  */
-public class ABIDAgent implements MancalaAgent {
+public class ABIDAgent implements MancalaAgent, InstrumentedAgent {
 
   static enum Ply {MAX, MIN};
 
-  static class MoveScore {
-    public int move;
-    public int score;
-
-    public MoveScore(int move, int score) {
-      this.move = move;
-      this.score = score;
-    }
-  }
-
-  static class ChildMove {
-    public int move;
-    public int[] state;
-
-    public ChildMove(int move, int[] state) {
-      this.move = move;
-      this.state = state;
-    }
-  }
-
-  static class TransEntry {
-    public int depth;
-    public int upperbound;
-    public int lowerbound;
-
-    public TransEntry() {
-      this.depth = 0;
-      this.upperbound = Integer.MAX_VALUE;
-      this.lowerbound = Integer.MIN_VALUE;
-    }
-  }
-
   private static int nSeeds = 3 * 12;
   private static int MAX_SEARCH_DEPTH = 100;
-  private static long MAX_RUN_TIME = 100; //maximum runtime in milliseconds
-  private HashMap<Long, TransEntry> transTable;
-  private long[][] zobristTable;
-  private long searchStartTime;
+  private static long MAX_RUN_TIME = 100; //time budget per move in milliseconds
+  private static int TT_MEGABYTES = 16; //default transposition table size
+  private static int ASPIRATION_WINDOW = 4; //default half-width around the previous score
+  private static int ASPIRATION_GROWTH = 4; //default widening factor after a failed window
+  private static int ASPIRATION_LIMIT = 128; //half-widths beyond any score open the window fully
+  private static int QUIESCENCE_NODES = 64; //default quiescence nodes per leaf
+  private static int QUIESCENCE_PLIES = 32; //board space reserved for quiescence lines
+  private TransTable transTable;
+  private boolean enhancedCutoffs;
+  private boolean clearOnReset; //otherwise the table carries over between games
+  private int aspirationWindow = ASPIRATION_WINDOW;
+  private int aspirationGrowth = ASPIRATION_GROWTH;
+  private int quiescenceNodes = QUIESCENCE_NODES;
+  private int quiescenceLeft; //nodes the current leaf's quiescence search may still visit
+  private final TimeManager clock = new TimeManager();
+  private SearchBoard searchBoard;
+  private MoveOrdering ordering;
+  private int rootMove;
+  private int maxPly;
+  long nodes; //nodes visited by the last search
+  long qnodes; //quiescence nodes visited by the last search
+  private SearchListener listener;
+  private final SearchStats searchStats = new SearchStats();
+  private SearchStats stats; //searchStats while collecting, otherwise null
+  private EndgameTable endgame = Endgame.shared(); //null without a tablebase
 
 
   public ABIDAgent() {
-    //init zobrist table
-    Random prng = new Random();
-    zobristTable = new long[14][nSeeds + 1];
-    for (int i = 0; i < 14; ++i) {
-      for (int j = 0; j < nSeeds + 1; ++j) {
-        zobristTable[i][j] = prng.nextLong();
-      }
-    }
-
-    //init transposition table
-    transTable = new HashMap<Long, TransEntry>();
-  }
-
-  private boolean timeUp() {
-    return((System.currentTimeMillis() - searchStartTime) >= MAX_RUN_TIME);
-  }
-
-  private long zobristHash(int[] state) {
-    long key = 0;
-    for (int i = 0; i < 14; ++i) {
-      key ^= zobristTable[i][state[i]];
-    }
-    return key;
+    this(TT_MEGABYTES);
   }
 
-  private boolean terminal(int[] state) {
-    //if south empty then state is terminal
-    int count = 0;
-    for (int i = 0; i < 6; ++i) count += state[i];
-    if (count == 0) return true;
-
-    //if north empty then state is terminal
-    count = 0;
-    for (int i = 7; i < 13; ++i) count += state[i];
-    if (count == 0) return true;
+  public ABIDAgent(int ttMegabytes) {
+    //init transposition table
+    transTable = TransTable.create(ttMegabytes);
 
-    //else state not terminal
-    return false;
+    //init search board, extra turns are made without reducing depth
+    maxPly = MAX_SEARCH_DEPTH + nSeeds + QUIESCENCE_PLIES;
+    searchBoard = new SearchBoard(maxPly + 1);
+    ordering = new MoveOrdering(maxPly + 1);
   }
 
-  private int evaluate(int[] state) {
+  int evaluate(SearchBoard state) {
     int score = 0;
 
     //check endgame conditions
-    if (terminal(state)) {
-      for (int i = 0; i < 7; ++i) score += state[i];
-      for (int i = 7; i < 14; ++i) score -= state[i];
+    if (state.terminal()) {
+      for (int i = 0; i < 7; ++i) score += state.pit(i);
+      for (int i = 7; i < 14; ++i) score -= state.pit(i);
 
       if (score > 0) {
         return 100; //victory
@@ -112,181 +72,376 @@ public class ABIDAgent implements MancalaAgent {
 
     //calculate board value
     for (int i = 0; i < 6; ++i) {
-      if ((state[i] == 0) && (state[12-i] > 0)) { //empty house rule
-        score += state[12-i] / 2 + 1; //potential empty house captures are worth half
+      if ((state.pit(i) == 0) && (state.pit(12-i) > 0)) { //empty house rule
+        score += state.pit(12-i) / 2 + 1; //potential empty house captures are worth half
       } else {
-        score += state[i]; //house seeds have standard value
+        score += state.pit(i); //house seeds have standard value
       }
     }
-    score += 2*state[6]; //siloed seeds are double
+    score += 2*state.pit(6); //siloed seeds are double
 
     for (int i = 7; i < 13; ++i) {
-      if ((state[i] == 0) && (state[12-i] > 0)) {
-        score -= state[12-i] / 2 + 1;
+      if ((state.pit(i) == 0) && (state.pit(12-i) > 0)) {
+        score -= state.pit(12-i) / 2 + 1;
       } else {
-        score -= state[i];
+        score -= state.pit(i);
       }
     }
-    score -= 2*state[13];
+    score -= 2*state.pit(13);
 
     return score;
   }
 
-  private MoveScore alphaBetaWithMemory(ChildMove move, int alpha, int beta, int depth, Ply step) {
-    int value, bestMove = 0;
-    MoveScore searchResult;
-    TransEntry trans;
-    long hash = zobristHash(move.state);
+  /**
+   * Principal variation search: the first (best ordered) child of a node
+   * is searched with the full window and the rest with a null window
+   * around the best value so far, re-searched with the full window only if
+   * they turn out to be better.
+   */
+  private int alphaBetaWithMemory(int alpha, int beta, int depth, Ply step, int ply) {
+    int a, b, value, score, house, n, lowerbound, upperbound, childDepth, bestMove = -1;
+    int[] moves;
+    long data;
+    boolean collided, extraTurn;
+    Ply childStep;
+    long hash = searchBoard.hash(); //maintained incrementally by make/unmake
+    ++nodes;
+
+    //abandon the iteration once time is up
+    if (clock.poll()) return 0;
     
-    //trans table lookup
-    if (transTable.containsKey(hash)) {
-      trans = transTable.get(hash);
-      if (trans.depth >= depth) {
-        if (trans.lowerbound >= beta) {
-          return new MoveScore(move.move, trans.lowerbound);
-        }
-        if (trans.upperbound <= alpha) {
-          return new MoveScore(move.move, trans.upperbound);
-        }
-        alpha = Math.max(alpha, trans.lowerbound);
-        beta = Math.min(beta, trans.upperbound);
+    //trans table lookup (the root, which must produce a move, only takes the best move)
+    data = transTable.probe(hash);
+    if ((stats != null) && (ply > 0)) stats.probe(data);
+    if ((ply > 0) && (data != 0) && (TransTable.depth(data) >= depth)) {
+      if ((TransTable.lower(data) >= beta) || (TransTable.lower(data) == TransTable.upper(data))) {
+        return TransTable.lower(data); //fail high or exact value
       }
+      if (TransTable.upper(data) <= alpha) {
+        return TransTable.upper(data);
+      }
+      alpha = Math.max(alpha, TransTable.lower(data));
+      beta = Math.min(beta, TransTable.upper(data));
     }
     
-    //base case
-    if ((depth == 0) || terminal(move.state)) {
-      return new MoveScore(move.move, evaluate(move.state));
+    //base case, a leaf with a capture or extra turn pending is searched on
+    if (searchBoard.terminal()) {
+      return evaluate(searchBoard);
+    }
+    if (depth == 0) {
+      if (quiescenceNodes <= 0) return evaluate(searchBoard);
+      quiescenceLeft = quiescenceNodes;
+      return quiesce(alpha, beta, step, ply);
+    }
+
+    //few enough seeds left to look up the exact outcome
+    if ((ply > 0) && (endgame != null) && endgame.covers(searchBoard)) {
+      return Integer.signum(endgame.finalDifference(searchBoard)) * 100;
     }
 
-    //recursive
+    //recursive, an extra turn is searched at the same depth by the same player
+    n = searchBoard.generate(ply, step == Ply.MAX);
+    moves = searchBoard.moves(ply);
+
+    //enhanced transposition cutoff, a child's stored bound may already refute the window
+    if (enhancedCutoffs && (ply > 0) && (depth >= TransTable.ETC_MIN_DEPTH)) {
+      score = transTable.transpositionCutoff(searchBoard, moves, n, depth, step == Ply.MAX, alpha, beta);
+      if (stats != null) stats.transpositionCutoff(n, score != TransTable.NO_CUTOFF);
+      if (score != TransTable.NO_CUTOFF) return score;
+    }
+    ordering.order(searchBoard, ply, n, (data != 0) ? TransTable.move(data) : TransTable.NO_MOVE);
     if (step == Ply.MAX) { //max step
       value = Integer.MIN_VALUE;
-      for (ChildMove child : children(move, Ply.MAX, false)) {
-        searchResult = alphaBetaWithMemory(child, alpha, beta, depth - 1, Ply.MIN);
-        if (searchResult.score >= value) {
-          value = searchResult.score;
-          bestMove = child.move;
+      a = alpha; //save original alpha
+      for (int i = 0; i < n; ++i) {
+        house = moves[i];
+        extraTurn = searchBoard.make(house);
+        childDepth = extraTurn ? depth : depth - 1;
+        childStep = extraTurn ? Ply.MAX : Ply.MIN;
+        if (i == 0) {
+          score = alphaBetaWithMemory(a, beta, childDepth, childStep, ply + 1);
+        } else {
+          //prove the move no better than the best so far with a null window
+          score = alphaBetaWithMemory(a, a + 1, childDepth, childStep, ply + 1);
+          if ((score > a) && (score < beta)) {
+            if (stats != null) ++stats.researches;
+            score = alphaBetaWithMemory(a, beta, childDepth, childStep, ply + 1);
+          }
+        }
+        searchBoard.unmake();
+        if (clock.aborted()) return 0; //partial results must not reach the table
+        if (score > value) { //a later move failing low at a ties only as a bound
+          value = score;
+          bestMove = house;
+        }
+        a = Math.max(a, value);
+        if (a >= beta) { //pruning
+          ordering.cutoff(house, ply, depth);
+          if (stats != null) stats.cutoff(i);
+          break;
         }
-        alpha = Math.max(alpha, value);
-        if (alpha >= beta) break; //pruning
       }
     } else { //min step
       value = Integer.MAX_VALUE;
-      for (ChildMove child : children(move, Ply.MIN, false)) {
-        searchResult = alphaBetaWithMemory(child, alpha, beta, depth - 1, Ply.MAX);
-        if (searchResult.score <= value) {
-          value = searchResult.score;
-          bestMove = child.move;
+      b = beta; //save original beta
+      for (int i = 0; i < n; ++i) {
+        house = moves[i];
+        extraTurn = searchBoard.make(house);
+        childDepth = extraTurn ? depth : depth - 1;
+        childStep = extraTurn ? Ply.MIN : Ply.MAX;
+        if (i == 0) {
+          score = alphaBetaWithMemory(alpha, b, childDepth, childStep, ply + 1);
+        } else {
+          //prove the move no better than the best so far with a null window
+          score = alphaBetaWithMemory(b - 1, b, childDepth, childStep, ply + 1);
+          if ((score < b) && (score > alpha)) {
+            if (stats != null) ++stats.researches;
+            score = alphaBetaWithMemory(alpha, b, childDepth, childStep, ply + 1);
+          }
+        }
+        searchBoard.unmake();
+        if (clock.aborted()) return 0; //partial results must not reach the table
+        if (score < value) {
+          value = score;
+          bestMove = house;
+        }
+        b = Math.min(b, value);
+        if (alpha >= b) {
+          ordering.cutoff(house, ply, depth);
+          if (stats != null) stats.cutoff(i);
+          break;
         }
-        beta = Math.min(beta, value);
-        if (alpha >= beta) break;
       }
     }
-
-    //store trans table values
-    trans = transTable.getOrDefault(hash, new TransEntry());
-
-    if (trans.depth <= depth) {
+    if (ply == 0) rootMove = bestMove;
+
+    //store trans table values, bounds from a shallower search are discarded
+    data = transTable.probe(hash);
+    if ((data == 0) || (TransTable.depth(data) <= depth)) {
+      if ((data != 0) && (TransTable.depth(data) == depth)) {
+        lowerbound = TransTable.lower(data);
+        upperbound = TransTable.upper(data);
+      } else {
+        lowerbound = TransTable.MIN_SCORE;
+        upperbound = TransTable.MAX_SCORE;
+      }
       //fail low implies an upper bound
       if (value <= alpha) {
-        trans.upperbound = value;
+        upperbound = value;
       }
       //fail high implies a lower bound
       else if (value >= beta) {
-        trans.lowerbound = value;
+        lowerbound = value;
       }
       //accurate minimax value
       else {
-        trans.lowerbound = value;
-        trans.upperbound = value;
+        lowerbound = value;
+        upperbound = value;
       }
-      trans.depth = depth;
-      transTable.put(hash, trans);
+      collided = transTable.store(hash, depth, lowerbound, upperbound, bestMove);
+      if (stats != null) stats.store(collided);
     }
 
-    return new MoveScore(bestMove, value);
+    return value;
   }
 
-  private ArrayList<ChildMove> children(ChildMove parent, Ply step, boolean extraTurn) {
-    ArrayList<ChildMove> childmoves = new ArrayList<ChildMove>();
-    ChildMove child;
-
-    if (step == Ply.MAX) { //our moves
-      for (int i = 0; i < 6; ++i) {
-        if (parent.state[i] > 0) {
-          //move is valid
-          if (extraTurn) { // if extra turn, treat as same move as parent
-            child = new ChildMove(parent.move, Arrays.copyOf(parent.state, 14));
-          } else {
-            child = new ChildMove(i, Arrays.copyOf(parent.state, 14));
-          }
-          //sow seeds from i
-          int j = i;
-          int seeds = parent.state[i];
-          child.state[i] = 0;
-          while(seeds > 0) {
-            ++j;
-            j %= 14;
-            if (j < 13) { //don't place in opponent store
-              --seeds;
-              child.state[j] += 1;
-            }
-          }
-          if (j == 6) { //extra turn
-            if (terminal(child.state)) { //if move ends the game it can't give an extra turn
-              childmoves.add(child);
-            } else { //recursively find extra move children of this state
-              childmoves.addAll(children(child, step, true));
-            }
-          } else {
-            if ((j >= 0) && (j <= 5) && (child.state[j] == 1) && (child.state[12-j] > 0)) { //empty house rule
-              child.state[6] = child.state[6] + child.state[12-j] + 1;
-              child.state[j] = 0;
-              child.state[12-j] = 0;
-            }
-            childmoves.add(child);
-          }
-        }
+  /**
+   * Quiescence search: below a leaf of the main search only moves that
+   * earn an extra turn or capture are searched, so positions aren't
+   * evaluated in the middle of an exchange. The side to move may instead
+   * stand pat on the static evaluation, taking a quiet move to be at least
+   * as good. Each leaf may visit quiescenceNodes nodes, after which the
+   * positions left are evaluated as they stand. Results are not stored.
+   */
+  private int quiesce(int alpha, int beta, Ply step, int ply) {
+    int value, score, house, n, noisy, store;
+    int[] moves;
+    boolean extraTurn;
+    ++qnodes;
+
+    //abandon the iteration once time is up
+    if (clock.poll()) return 0;
+
+    //stand pat
+    value = evaluate(searchBoard);
+    if (searchBoard.terminal() || (--quiescenceLeft <= 0) || (ply >= maxPly)) return value;
+    if ((step == Ply.MAX) ? (value >= beta) : (value <= alpha)) return value;
+
+    //only captures and extra turns
+    n = searchBoard.generate(ply, step == Ply.MAX);
+    moves = searchBoard.moves(ply);
+    store = (step == Ply.MAX) ? Position.SOUTH_STORE : Position.NORTH_STORE;
+    noisy = 0;
+    for (int i = 0; i < n; ++i) {
+      house = moves[i];
+      if ((searchBoard.landing(house) == store) || (searchBoard.captured(house) > 0)) moves[noisy++] = house;
+    }
+    ordering.order(searchBoard, ply, noisy, TransTable.NO_MOVE);
+    for (int i = 0; i < noisy; ++i) {
+      house = moves[i];
+      extraTurn = searchBoard.make(house);
+      if (step == Ply.MAX) {
+        score = quiesce(Math.max(alpha, value), beta, extraTurn ? Ply.MAX : Ply.MIN, ply + 1);
+      } else {
+        score = quiesce(alpha, Math.min(beta, value), extraTurn ? Ply.MIN : Ply.MAX, ply + 1);
       }
-    } else { //enemy moves
-      for (int i = 7; i < 13; ++i) {
-        if (parent.state[i] > 0) {
-          //move is valid
-          if (extraTurn) {
-            child = new ChildMove(parent.move, Arrays.copyOf(parent.state, 14));
-          } else {
-            child = new ChildMove(i, Arrays.copyOf(parent.state, 14));
-          }
-          //sow seeds from i
-          int j = i;
-          int seeds = parent.state[i];
-          child.state[i] = 0;
-          while(seeds > 0) {
-            ++j;
-            j %= 14;
-            if (j < 6) { //don't place in our store
-              --seeds;
-              child.state[j] += 1;
-            }
-          }
-          if (j == 13) { //extra turn
-            if (terminal(child.state)) { //if move ends the game it can't give an extra turn
-              childmoves.add(child);
-            } else { //recursively find extra move children of this state
-              childmoves.addAll(children(child, step, true));
-            }
-          } else {
-            if ((j >= 7) && (j <= 12) && (child.state[j] == 1) && (child.state[12-j] > 0)) { //empty house rule
-              child.state[13] = child.state[13] + child.state[12-j] + 1;
-              child.state[j] = 0;
-              child.state[12-j] = 0;
-            }
-            childmoves.add(child);
-          }
-        }
+      searchBoard.unmake();
+      if (clock.aborted()) return 0;
+      value = (step == Ply.MAX) ? Math.max(value, score) : Math.min(value, score);
+      if ((step == Ply.MAX) ? (value >= beta) : (value <= alpha)) break;
+    }
+    return value;
+  }
+
+  /**
+   * Searches the root with an aspiration window around the previous
+   * iteration's score. When the score falls outside, only the failing side
+   * of the window is widened (by the growth factor, and eventually to no
+   * bound at all) and the root is searched again.
+   *
+   * @param guess the previous iteration's score
+   * @param depth the search depth
+   * @return the minimax value, meaningless if the clock aborted the search
+   */
+  private int aspirationSearch(int guess, int depth) {
+    int below = aspirationWindow;
+    int above = aspirationWindow;
+    int alpha, beta, score;
+    if ((aspirationWindow <= 0) || (depth == 1)) {
+      return alphaBetaWithMemory(Integer.MIN_VALUE, Integer.MAX_VALUE, depth, Ply.MAX, 0);
+    }
+    while (true) {
+      alpha = (below > ASPIRATION_LIMIT) ? Integer.MIN_VALUE : guess - below;
+      beta = (above > ASPIRATION_LIMIT) ? Integer.MAX_VALUE : guess + above;
+      score = alphaBetaWithMemory(alpha, beta, depth, Ply.MAX, 0);
+      if (clock.aborted()) return score;
+      if ((score <= alpha) && (alpha != Integer.MIN_VALUE)) {
+        below *= aspirationGrowth; //fail low, the root move is unreliable
+      } else if ((score >= beta) && (beta != Integer.MAX_VALUE)) {
+        above *= aspirationGrowth; //fail high
+      } else {
+        return score;
       }
+      if (stats != null) ++stats.researches;
     }
-    return childmoves;
+  }
+
+  /**
+   * Sets the aspiration window used from the second iteration on.
+   *
+   * @param window the half-width of the first window around the previous
+   * score, 0 to always search with a full window
+   * @param growth the factor a failing side of the window is widened by, at least 2
+   */
+  public void setAspiration(int window, int growth) {
+    this.aspirationWindow = Math.max(0, window);
+    this.aspirationGrowth = Math.max(2, growth);
+  }
+
+  /**
+   * Sets the quiescence search's budget.
+   *
+   * @param nodes the nodes each leaf of the main search may spend
+   * searching captures and extra turns, 0 to evaluate leaves directly
+   */
+  public void setQuiescence(int nodes) {
+    this.quiescenceNodes = Math.max(0, nodes);
+  }
+
+  /**
+   * Iteratively deepens to a fixed depth, ignoring the clock, from an
+   * empty transposition table, for benchmarking.
+   *
+   * @param board the position to search, as passed to move()
+   * @param depth the final search depth
+   * @return the house chosen
+   */
+  int search(int[] board, int depth) {
+    transTable.clear();
+    ordering.clear();
+    clock.stop();
+    nodes = 0;
+    qnodes = 0;
+    searchBoard.set(Position.of(board));
+    int guess = 0;
+    for (int d = 1; d <= Math.min(depth, MAX_SEARCH_DEPTH); ++d) {
+      guess = aspirationSearch(guess, d);
+      ordering.recordPrincipalVariation(searchBoard, transTable);
+    }
+    return rootMove;
+  }
+
+  /**
+   * Sets the endgame tablebase consulted once few enough seeds are left in
+   * the houses. Agents start with Endgame.shared().
+   *
+   * @param endgame the tablebase, or null to search to the end
+   */
+  public void setEndgame(EndgameTable endgame) {
+    this.endgame = endgame;
+  }
+
+  /**
+   * Enables enhanced transposition cutoffs (see TransTable), off by default.
+   *
+   * @param enhancedCutoffs true to look up every child before searching any
+   */
+  public void setEnhancedCutoffs(boolean enhancedCutoffs) {
+    this.enhancedCutoffs = enhancedCutoffs;
+  }
+
+  /**
+   * Chooses whether reset() empties the transposition table. By default
+   * entries carry over to the next game, where they are used until newer
+   * results replace them.
+   *
+   * @param clearOnReset true to start every game from an empty table
+   */
+  public void setClearOnReset(boolean clearOnReset) {
+    this.clearOnReset = clearOnReset;
+  }
+
+  /**
+   * Saves the transposition table, so that it can be shipped with the
+   * agent and loaded through loadTransTable() or -Dmancala.tt.
+   * Must not be called during a move.
+   *
+   * @param file the file to write
+   * @throws IOException if the file can't be written
+   */
+  public void saveTransTable(File file) throws IOException {
+    transTable.save(file);
+  }
+
+  /**
+   * Replaces the transposition table with one saved by saveTransTable().
+   * Must not be called during a move.
+   *
+   * @param file the file to read
+   * @throws IOException if the file can't be read or isn't a transposition table
+   */
+  public void loadTransTable(File file) throws IOException {
+    transTable = TransTable.load(file);
+  }
+
+  /**
+   * The principal variation of the last move's search, recovered from the
+   * transposition table's best moves. Houses are numbered as on the board
+   * passed to move(), so the opponent's replies are 7-12.
+   *
+   * @return the line the agent expects, starting with the move it played
+   */
+  public int[] principalVariation() {
+    return ordering.principalVariation();
+  }
+
+  /**
+   * Attaches a listener to be sent search statistics after every move.
+   *
+   * @param listener the listener, or null to stop collecting statistics
+   */
+  public void setSearchListener(SearchListener listener) {
+    this.listener = listener;
   }
 
   /**
@@ -304,19 +459,40 @@ public class ABIDAgent implements MancalaAgent {
    * @return the house the agent would like to move the seeds from this turn.
    */
   public int move(int[] board) {
-    int alpha = Integer.MIN_VALUE;
-    int beta = Integer.MAX_VALUE;
     int depth = 1;
-    ChildMove state = new ChildMove(-1, board);
-    MoveScore best;
-
-    this.searchStartTime = System.currentTimeMillis();
-    best = alphaBetaWithMemory(state, alpha, beta, depth, Ply.MAX);
-    while ((depth < MAX_SEARCH_DEPTH) && (!timeUp())) {
+    int guess, score, best;
+    nodes = 0;
+    qnodes = 0;
+    transTable.newSearch();
+    ordering.newSearch();
+    searchBoard.set(Position.of(board));
+    stats = (listener != null) ? searchStats : null;
+    if (stats != null) stats.reset();
+
+    //the first iteration always completes, later ones are abandoned when time is up
+    clock.start(MAX_RUN_TIME * 1000000);
+    guess = aspirationSearch(0, depth);
+    best = rootMove;
+    ordering.recordPrincipalVariation(searchBoard, transTable);
+    clock.iterationDone();
+    if (stats != null) stats.iteration(depth);
+    while ((depth < MAX_SEARCH_DEPTH) && clock.startIteration()) {
+      score = aspirationSearch(guess, depth + 1); //the previous PV is searched first
+      if (clock.aborted()) break; //keep the last completed iteration's move
       ++depth;
-      best = alphaBetaWithMemory(state, alpha, beta, depth, Ply.MAX);
+      guess = score;
+      best = rootMove;
+      ordering.recordPrincipalVariation(searchBoard, transTable);
+      clock.iterationDone();
+      if (stats != null) stats.iteration(depth);
+    }
+    if (stats != null) {
+      stats.nodes = nodes;
+      stats.qnodes = qnodes;
+      stats.pvLength = ordering.principalVariation(stats.pv);
+      listener.searchFinished(name(), stats);
     }
-    return best.move;
+    return best;
   }
 
   /**
@@ -330,7 +506,9 @@ public class ABIDAgent implements MancalaAgent {
   /**
    * A method to reset the agent for a new game.
    */
-  public void reset() {}
+  public void reset() {
+    if (clearOnReset) transTable.clear();
+  }
 }
 
 
@@ -1,97 +1,83 @@
-import java.util.HashMap;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Random;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Alpha-Beta Pruning search with memory for Mancala
  * 
  * OOP version for passing results
+ *
+ * Optionally searches in parallel with Young Brothers Wait: at nodes with
+ * at least splitDepth plies left the first child is searched serially,
+ * then the remaining siblings are forked as tasks on a ForkJoinPool and
+ * share the node's bound through an atomic integer. Each pool thread
+ * searches its tasks with its own reused boards and move orderings.
  */
-public class ABWMAgent implements MancalaAgent {
+public class ABWMAgent implements MancalaAgent, InstrumentedAgent {
 
   static enum Ply {MAX, MIN};
 
-  static class MoveScore {
-    public int move;
-    public int score;
-
-    public MoveScore(int move, int score) {
-      this.move = move;
-      this.score = score;
-    }
-  }
-
-  static class ChildMove {
-    public int move;
-    public int[] state;
-
-    public ChildMove(int move, int[] state) {
-      this.move = move;
-      this.state = state;
-    }
-  }
-
-  static class TransEntry {
-    public int depth;
-    public int upperbound;
-    public int lowerbound;
-
-    public TransEntry() {
-      this.depth = 0;
-      this.upperbound = Integer.MAX_VALUE;
-      this.lowerbound = Integer.MIN_VALUE;
-    }
-  }
-
-  private HashMap<Long, TransEntry> transTable;
-  private long[][] zobristTable;
+  private static int SEARCH_DEPTH = 12;
+  private static int TT_MEGABYTES = 16; //default transposition table size
+  private static int SPLIT_DEPTH = 4; //default minimum depth left to fork siblings at
+  private TransTable transTable;
+  private boolean enhancedCutoffs;
+  private boolean clearOnReset; //otherwise the table carries over between games
   private int nSeeds = 3 * 12;
+  private SearchBoard searchBoard;
+  private MoveOrdering ordering;
+  private int rootMove;
+  long nodes; //nodes visited by the last search
+  private ForkJoinPool pool;
+  private int splitDepth;
+  private final Worker callerWorker = new Worker(); //for a task run by the thread that invoked the pool
+  private SearchListener listener;
+  private final SearchStats searchStats = new SearchStats();
+  private SearchStats stats; //searchStats while a serial search is collecting, otherwise null
+  private EndgameTable endgame = Endgame.shared(); //null without a tablebase
 
   public ABWMAgent() {
-    //init zobrist table
-    Random prng = new Random();
-    zobristTable = new long[14][nSeeds + 1];
-    for (int i = 0; i < 14; ++i) {
-      for (int j = 0; j < nSeeds + 1; ++j) {
-        zobristTable[i][j] = prng.nextLong();
-      }
-    }
-
-    //init transposition table
-    transTable = new HashMap<Long, TransEntry>();
+    this(TT_MEGABYTES);
   }
 
-  private long zobristHash(int[] state) {
-    long key = 0;
-    for (int i = 0; i < 14; ++i) {
-      key ^= zobristTable[i][state[i]];
-    }
-    return key;
+  public ABWMAgent(int ttMegabytes) {
+    this(ttMegabytes, 1, SPLIT_DEPTH);
   }
 
-  private boolean terminal(int[] state) {
-    //if south empty then state is terminal
-    int count = 0;
-    for (int i = 0; i < 6; ++i) count += state[i];
-    if (count == 0) return true;
+  /**
+   * @param ttMegabytes the transposition table size in MiB
+   * @param threads the parallelism of the fork-join pool, 1 for a serial search
+   * @param splitDepth the minimum depth left at a node for its siblings to be forked
+   */
+  public ABWMAgent(int ttMegabytes, int threads, int splitDepth) {
+    //init transposition table
+    transTable = TransTable.create(ttMegabytes);
 
-    //if north empty then state is terminal
-    count = 0;
-    for (int i = 7; i < 13; ++i) count += state[i];
-    if (count == 0) return true;
+    //init search board, extra turns are made without reducing depth
+    searchBoard = new SearchBoard(SEARCH_DEPTH + nSeeds + 1);
+    ordering = new MoveOrdering(SEARCH_DEPTH + nSeeds + 1);
 
-    //else state not terminal
-    return false;
+    //init parallel search
+    if (threads > 1) {
+      pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+          return new SearchThread(pool);
+        }
+      }, null, false);
+    }
+    this.splitDepth = Math.max(1, splitDepth);
   }
 
-  private int evaluate(int[] state) {
+  int evaluate(SearchBoard state) {
     int score = 0;
 
     //check endgame conditions
-    if (terminal(state)) {
-      for (int i = 0; i < 7; ++i) score += state[i];
-      for (int i = 7; i < 14; ++i) score -= state[i];
+    if (state.terminal()) {
+      for (int i = 0; i < 7; ++i) score += state.pit(i);
+      for (int i = 7; i < 14; ++i) score -= state.pit(i);
 
       if (score > 0) {
         return 100; //victory
@@ -104,181 +90,621 @@ public class ABWMAgent implements MancalaAgent {
 
     //calculate board value
     for (int i = 0; i < 6; ++i) {
-      if ((state[i] == 0) && (state[12-i] > 0)) { //empty house rule
-        score += state[12-i] / 2 + 1; //potential empty house captures are worth half
+      if ((state.pit(i) == 0) && (state.pit(12-i) > 0)) { //empty house rule
+        score += state.pit(12-i) / 2 + 1; //potential empty house captures are worth half
       } else {
-        score += state[i]; //house seeds have standard value
+        score += state.pit(i); //house seeds have standard value
       }
     }
-    score += 2*state[6]; //siloed seeds are double
+    score += 2*state.pit(6); //siloed seeds are double
 
     for (int i = 7; i < 13; ++i) {
-      if ((state[i] == 0) && (state[12-i] > 0)) {
-        score -= state[12-i] / 2 + 1;
+      if ((state.pit(i) == 0) && (state.pit(12-i) > 0)) {
+        score -= state.pit(12-i) / 2 + 1;
       } else {
-        score -= state[i];
+        score -= state.pit(i);
       }
     }
-    score -= 2*state[13];
+    score -= 2*state.pit(13);
 
     return score;
   }
 
-  private MoveScore alphaBetaWithMemory(ChildMove move, int alpha, int beta, int depth, Ply step) {
-    int value, bestMove = 0;
-    MoveScore searchResult;
-    TransEntry trans;
-    long hash = zobristHash(move.state);
+  private int alphaBetaWithMemory(int alpha, int beta, int depth, Ply step, int ply) {
+    int a, b, value, score, house, n, lowerbound, upperbound, bestMove = -1;
+    int[] moves;
+    long data;
+    boolean collided;
+    long hash = searchBoard.hash(); //maintained incrementally by make/unmake
+    ++nodes;
     
-    //trans table lookup
-    if (transTable.containsKey(hash)) {
-      trans = transTable.get(hash);
-      if (trans.depth >= depth) {
-        if (trans.lowerbound >= beta) {
-          return new MoveScore(move.move, trans.lowerbound);
-        }
-        if (trans.upperbound <= alpha) {
-          return new MoveScore(move.move, trans.upperbound);
-        }
-        alpha = Math.max(alpha, trans.lowerbound);
-        beta = Math.min(beta, trans.upperbound);
+    //trans table lookup (the root, which must produce a move, only takes the best move)
+    data = transTable.probe(hash);
+    if ((stats != null) && (ply > 0)) stats.probe(data);
+    if ((ply > 0) && (data != 0) && (TransTable.depth(data) >= depth)) {
+      if ((TransTable.lower(data) >= beta) || (TransTable.lower(data) == TransTable.upper(data))) {
+        return TransTable.lower(data); //fail high or exact value
       }
+      if (TransTable.upper(data) <= alpha) {
+        return TransTable.upper(data);
+      }
+      alpha = Math.max(alpha, TransTable.lower(data));
+      beta = Math.min(beta, TransTable.upper(data));
     }
     
     //base case
-    if ((depth == 0) || terminal(move.state)) {
-      return new MoveScore(move.move, evaluate(move.state));
+    if ((depth == 0) || searchBoard.terminal()) {
+      return evaluate(searchBoard);
+    }
+
+    //few enough seeds left to look up the exact outcome
+    if ((ply > 0) && (endgame != null) && endgame.covers(searchBoard)) {
+      return Integer.signum(endgame.finalDifference(searchBoard)) * 100;
     }
 
-    //recursive
+    //recursive, an extra turn is searched at the same depth by the same player
+    n = searchBoard.generate(ply, step == Ply.MAX);
+    moves = searchBoard.moves(ply);
+
+    //enhanced transposition cutoff, a child's stored bound may already refute the window
+    if (enhancedCutoffs && (ply > 0) && (depth >= TransTable.ETC_MIN_DEPTH)) {
+      score = transTable.transpositionCutoff(searchBoard, moves, n, depth, step == Ply.MAX, alpha, beta);
+      if (stats != null) stats.transpositionCutoff(n, score != TransTable.NO_CUTOFF);
+      if (score != TransTable.NO_CUTOFF) return score;
+    }
+    ordering.order(searchBoard, ply, n, (data != 0) ? TransTable.move(data) : TransTable.NO_MOVE);
     if (step == Ply.MAX) { //max step
       value = Integer.MIN_VALUE;
-      for (ChildMove child : children(move, Ply.MAX, false)) {
-        searchResult = alphaBetaWithMemory(child, alpha, beta, depth - 1, Ply.MIN);
-        if (searchResult.score >= value) {
-          value = searchResult.score;
-          bestMove = child.move;
+      a = alpha; //save original alpha
+      for (int i = 0; i < n; ++i) {
+        house = moves[i];
+        if (searchBoard.make(house)) {
+          score = alphaBetaWithMemory(a, beta, depth, Ply.MAX, ply + 1);
+        } else {
+          score = alphaBetaWithMemory(a, beta, depth - 1, Ply.MIN, ply + 1);
+        }
+        searchBoard.unmake();
+        if (score > value) {
+          value = score;
+          bestMove = house;
+        }
+        a = Math.max(a, value);
+        if (a >= beta) { //pruning
+          ordering.cutoff(house, ply, depth);
+          if (stats != null) stats.cutoff(i);
+          break;
         }
-        alpha = Math.max(alpha, value);
-        if (alpha >= beta) break; //pruning
       }
     } else { //min step
       value = Integer.MAX_VALUE;
-      for (ChildMove child : children(move, Ply.MIN, false)) {
-        searchResult = alphaBetaWithMemory(child, alpha, beta, depth - 1, Ply.MAX);
-        if (searchResult.score <= value) {
-          value = searchResult.score;
-          bestMove = child.move;
+      b = beta; //save original beta
+      for (int i = 0; i < n; ++i) {
+        house = moves[i];
+        if (searchBoard.make(house)) {
+          score = alphaBetaWithMemory(alpha, b, depth, Ply.MIN, ply + 1);
+        } else {
+          score = alphaBetaWithMemory(alpha, b, depth - 1, Ply.MAX, ply + 1);
+        }
+        searchBoard.unmake();
+        if (score < value) {
+          value = score;
+          bestMove = house;
+        }
+        b = Math.min(b, value);
+        if (alpha >= b) {
+          ordering.cutoff(house, ply, depth);
+          if (stats != null) stats.cutoff(i);
+          break;
         }
-        beta = Math.min(beta, value);
-        if (alpha >= beta) break;
       }
     }
-
-    //store trans table values
-    trans = transTable.getOrDefault(hash, new TransEntry());
-
-    if (trans.depth <= depth) {
+    if (ply == 0) rootMove = bestMove;
+
+    //store trans table values, bounds from a shallower search are discarded
+    data = transTable.probe(hash);
+    if ((data == 0) || (TransTable.depth(data) <= depth)) {
+      if ((data != 0) && (TransTable.depth(data) == depth)) {
+        lowerbound = TransTable.lower(data);
+        upperbound = TransTable.upper(data);
+      } else {
+        lowerbound = TransTable.MIN_SCORE;
+        upperbound = TransTable.MAX_SCORE;
+      }
       //fail low implies an upper bound
       if (value <= alpha) {
-        trans.upperbound = value;
+        upperbound = value;
       }
       //fail high implies a lower bound
       else if (value >= beta) {
-        trans.lowerbound = value;
+        lowerbound = value;
       }
       //accurate minimax value
       else {
-        trans.lowerbound = value;
-        trans.upperbound = value;
+        lowerbound = value;
+        upperbound = value;
       }
-      trans.depth = depth;
-      transTable.put(hash, trans);
+      collided = transTable.store(hash, depth, lowerbound, upperbound, bestMove);
+      if (stats != null) stats.store(collided);
     }
 
-    return new MoveScore(bestMove, value);
+    return value;
   }
 
-  private ArrayList<ChildMove> children(ChildMove parent, Ply step, boolean extraTurn) {
-    ArrayList<ChildMove> childmoves = new ArrayList<ChildMove>();
-    ChildMove child;
+  /**
+   * A node whose younger siblings have been forked. Its bound is shared by
+   * the sibling tasks, and a cutoff cancels them and everything below them.
+   */
+  static class Split {
+    final Split parent;
+    final AtomicInteger bound;
+    volatile boolean cutoff;
+
+    Split(Split parent, int bound) {
+      this.parent = parent;
+      this.bound = new AtomicInteger(bound);
+    }
 
-    if (step == Ply.MAX) { //our moves
-      for (int i = 0; i < 6; ++i) {
-        if (parent.state[i] > 0) {
-          //move is valid
-          if (extraTurn) { // if extra turn, treat as same move as parent
-            child = new ChildMove(parent.move, Arrays.copyOf(parent.state, 14));
-          } else {
-            child = new ChildMove(i, Arrays.copyOf(parent.state, 14));
-          }
-          //sow seeds from i
-          int j = i;
-          int seeds = parent.state[i];
-          child.state[i] = 0;
-          while(seeds > 0) {
-            ++j;
-            j %= 14;
-            if (j < 13) { //don't place in opponent store
-              --seeds;
-              child.state[j] += 1;
-            }
+    boolean cancelled() {
+      for (Split s = this; s != null; s = s.parent) {
+        if (s.cutoff) return true;
+      }
+      return false;
+    }
+
+    //raise a max node's alpha, returns the new bound
+    int raise(int value) {
+      int old;
+      while (value > (old = bound.get())) {
+        if (bound.compareAndSet(old, value)) return value;
+      }
+      return old;
+    }
+
+    //lower a min node's beta, returns the new bound
+    int lower(int value) {
+      int old;
+      while (value < (old = bound.get())) {
+        if (bound.compareAndSet(old, value)) return value;
+      }
+      return old;
+    }
+  }
+
+  /**
+   * The boards and move orderings a thread searches split tasks with. A
+   * thread waiting for forked siblings may run other tasks inline, so it
+   * keeps a stack of them, one per task it is running, and reuses them for
+   * later tasks. Each task starts its ordering afresh, as killers and
+   * history from another part of the tree mislead it more than they help.
+   */
+  class Worker {
+    private SearchBoard[] boards = new SearchBoard[4];
+    private MoveOrdering[] orderings = new MoveOrdering[4];
+    private int running; //tasks on the stack
+
+    /**
+     * Gives a task starting on this thread a board set to its position and
+     * an empty move ordering.
+     */
+    void push(SplitTask task) {
+      if (running == boards.length) {
+        boards = java.util.Arrays.copyOf(boards, 2 * running);
+        orderings = java.util.Arrays.copyOf(orderings, 2 * running);
+      }
+      if (boards[running] == null) {
+        boards[running] = new SearchBoard(SEARCH_DEPTH + nSeeds + 1);
+        orderings[running] = new MoveOrdering(SEARCH_DEPTH + nSeeds + 1);
+      }
+      task.board = boards[running];
+      task.ordering = orderings[running];
+      ++running;
+      task.board.set(task.position, task.southToMove);
+      task.ordering.clear();
+    }
+
+    /**
+     * Releases the board and ordering of the task that finished last.
+     */
+    void pop() {
+      --running;
+    }
+  }
+
+  /**
+   * A thread of the parallel search's pool.
+   */
+  class SearchThread extends ForkJoinWorkerThread {
+    final Worker worker = new Worker();
+
+    SearchThread(ForkJoinPool pool) {
+      super(pool);
+    }
+  }
+
+  private Worker worker() {
+    Thread thread = Thread.currentThread();
+    if ((thread instanceof SearchThread) && (((SearchThread) thread).getPool() == pool)) {
+      return ((SearchThread) thread).worker;
+    }
+    return callerWorker;
+  }
+
+  /**
+   * Searches one subtree with its thread's board. Subtrees under a split
+   * narrow their window with the split's shared bound as they go and
+   * publish their score to it when they finish.
+   */
+  class SplitTask extends RecursiveTask<Integer> {
+    private static final long serialVersionUID = 1L;
+    private final Position position;
+    private final boolean southToMove;
+    private SearchBoard board; //the thread's board and ordering while the task runs
+    private MoveOrdering ordering;
+    private final Split split;
+    private final Ply parentStep;
+    private final int alpha, beta, depth, ply;
+    private final Ply step;
+    private int move = -1; //the best root move, for the root task
+    private int window; //the split's bound as this task last adopted it
+    private long taskNodes;
+    private boolean aborted;
+
+    SplitTask(Position position, boolean southToMove, Split split, Ply parentStep,
+        int alpha, int beta, int depth, Ply step, int ply) {
+      this.position = position;
+      this.southToMove = southToMove;
+      this.split = split;
+      this.parentStep = parentStep;
+      this.alpha = alpha;
+      this.beta = beta;
+      this.depth = depth;
+      this.step = step;
+      this.ply = ply;
+    }
+
+    protected Integer compute() {
+      int a = alpha;
+      int b = beta;
+      window = (parentStep == Ply.MAX) ? alpha : beta;
+      if (split != null) {
+        if (split.cancelled()) {
+          aborted = true;
+          return 0;
+        }
+        //tighten the window with whatever the elder siblings have found
+        if (parentStep == Ply.MAX) {
+          a = window = Math.max(a, split.bound.get());
+        } else {
+          b = window = Math.min(b, split.bound.get());
+        }
+      }
+      Worker worker = worker();
+      worker.push(this);
+      int score;
+      try {
+        score = ybw(a, b, depth, step, ply);
+      } finally {
+        worker.pop();
+        board = null;
+        ordering = null;
+      }
+      if (split != null && !aborted) {
+        if (parentStep == Ply.MAX) {
+          if (split.raise(score) >= beta) split.cutoff = true;
+        } else {
+          if (split.lower(score) <= alpha) split.cutoff = true;
+        }
+      }
+      return score;
+    }
+
+    private int ybw(int alpha, int beta, int depth, Ply step, int ply) {
+      int a, b, value, score, house, n, lowerbound, upperbound, bestMove = -1;
+      int[] moves;
+      long data;
+      long hash = board.hash();
+      ++taskNodes;
+
+      if (split != null && split.cancelled()) {
+        aborted = true;
+        return 0;
+      }
+
+      //trans table lookup (the root, which must produce a move, only takes the best move)
+      data = transTable.probe(hash);
+      if ((ply > 0) && (data != 0) && (TransTable.depth(data) >= depth)) {
+        if ((TransTable.lower(data) >= beta) || (TransTable.lower(data) == TransTable.upper(data))) {
+          return TransTable.lower(data); //fail high or exact value
+        }
+        if (TransTable.upper(data) <= alpha) {
+          return TransTable.upper(data);
+        }
+        alpha = Math.max(alpha, TransTable.lower(data));
+        beta = Math.min(beta, TransTable.upper(data));
+      }
+
+      //base case
+      if ((depth == 0) || board.terminal()) {
+        return evaluate(board);
+      }
+
+      //few enough seeds left to look up the exact outcome
+      if ((ply > 0) && (endgame != null) && endgame.covers(board)) {
+        return Integer.signum(endgame.finalDifference(board)) * 100;
+      }
+
+      n = board.generate(ply, step == Ply.MAX);
+      moves = board.moves(ply);
+
+      //enhanced transposition cutoff, a child's stored bound may already refute the window
+      if (enhancedCutoffs && (ply > 0) && (depth >= TransTable.ETC_MIN_DEPTH)) {
+        score = transTable.transpositionCutoff(board, moves, n, depth, step == Ply.MAX, alpha, beta);
+        if (score != TransTable.NO_CUTOFF) return score;
+      }
+      ordering.order(board, ply, n, (data != 0) ? TransTable.move(data) : TransTable.NO_MOVE);
+      value = (step == Ply.MAX) ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+      a = alpha;
+      b = beta;
+      for (int i = 0; i < n; ++i) {
+        //at the task's own node, take up whatever the other siblings have found since
+        if ((ply == this.ply) && (split != null) && (i > 0)) {
+          if (split.cancelled()) {
+            aborted = true;
+            return 0;
           }
-          if (j == 6) { //extra turn
-            if (terminal(child.state)) { //if move ends the game it can't give an extra turn
-              childmoves.add(child);
-            } else { //recursively find extra move children of this state
-              childmoves.addAll(children(child, step, true));
-            }
+          if (parentStep == Ply.MAX) {
+            window = Math.max(window, split.bound.get());
+            alpha = Math.max(alpha, window);
+            a = Math.max(a, alpha);
           } else {
-            if ((j >= 0) && (j <= 5) && (child.state[j] == 1) && (child.state[12-j] > 0)) { //empty house rule
-              child.state[6] = child.state[6] + child.state[12-j] + 1;
-              child.state[j] = 0;
-              child.state[12-j] = 0;
-            }
-            childmoves.add(child);
+            window = Math.min(window, split.bound.get());
+            beta = Math.min(beta, window);
+            b = Math.min(b, beta);
           }
+          if (a >= b) return window; //can't beat another sibling, nothing to store
         }
-      }
-    } else { //enemy moves
-      for (int i = 7; i < 13; ++i) {
-        if (parent.state[i] > 0) {
-          //move is valid
-          if (extraTurn) {
-            child = new ChildMove(parent.move, Arrays.copyOf(parent.state, 14));
-          } else {
-            child = new ChildMove(i, Arrays.copyOf(parent.state, 14));
+        //once the eldest brother is searched, fork the rest at deep enough nodes
+        if ((i == 1) && (depth >= splitDepth) && (a < b)) {
+          Split s = new Split(split, (step == Ply.MAX) ? a : b);
+          SplitTask[] tasks = new SplitTask[n - 1];
+          for (int k = 1; k < n; ++k) {
+            boolean extraTurn = board.make(moves[k]);
+            Ply childStep = extraTurn ? step : ((step == Ply.MAX) ? Ply.MIN : Ply.MAX);
+            tasks[k - 1] = new SplitTask(board.position(), board.southToMove(), s, step,
+                a, b, extraTurn ? depth : depth - 1, childStep, ply + 1);
+            board.unmake();
           }
-          //sow seeds from i
-          int j = i;
-          int seeds = parent.state[i];
-          child.state[i] = 0;
-          while(seeds > 0) {
-            ++j;
-            j %= 14;
-            if (j < 6) { //don't place in our store
-              --seeds;
-              child.state[j] += 1;
+          invokeAll(tasks);
+          for (int k = 0; k < tasks.length; ++k) {
+            taskNodes += tasks[k].taskNodes;
+            if (tasks[k].aborted) continue;
+            score = tasks[k].join();
+            //failing against a bound another sibling published only ties that sibling at best
+            if ((step == Ply.MAX) ? (tasks[k].window > a) && (score <= tasks[k].window)
+                : (tasks[k].window < b) && (score >= tasks[k].window)) continue;
+            if ((step == Ply.MAX) ? (score > value) : (score < value)) {
+              value = score;
+              bestMove = moves[k + 1];
             }
           }
-          if (j == 13) { //extra turn
-            if (terminal(child.state)) { //if move ends the game it can't give an extra turn
-              childmoves.add(child);
-            } else { //recursively find extra move children of this state
-              childmoves.addAll(children(child, step, true));
-            }
-          } else {
-            if ((j >= 7) && (j <= 12) && (child.state[j] == 1) && (child.state[12-j] > 0)) { //empty house rule
-              child.state[13] = child.state[13] + child.state[12-j] + 1;
-              child.state[j] = 0;
-              child.state[12-j] = 0;
-            }
-            childmoves.add(child);
+          break;
+        }
+        house = moves[i];
+        if (board.make(house)) {
+          score = ybw(a, b, depth, step, ply + 1);
+        } else {
+          score = ybw(a, b, depth - 1, (step == Ply.MAX) ? Ply.MIN : Ply.MAX, ply + 1);
+        }
+        board.unmake();
+        if (aborted) return 0;
+        if (step == Ply.MAX) {
+          if (score > value) {
+            value = score;
+            bestMove = house;
+          }
+          a = Math.max(a, value);
+        } else {
+          if (score < value) {
+            value = score;
+            bestMove = house;
           }
+          b = Math.min(b, value);
+        }
+        if (a >= b) { //pruning
+          ordering.cutoff(house, ply, depth);
+          break;
+        }
+      }
+      if (aborted || (split != null && split.cancelled())) {
+        aborted = true;
+        return 0;
+      }
+      if (ply == this.ply) move = bestMove;
+
+      //store trans table values, bounds from a shallower search are discarded
+      data = transTable.probe(hash);
+      if ((data == 0) || (TransTable.depth(data) <= depth)) {
+        if ((data != 0) && (TransTable.depth(data) == depth)) {
+          lowerbound = TransTable.lower(data);
+          upperbound = TransTable.upper(data);
+        } else {
+          lowerbound = TransTable.MIN_SCORE;
+          upperbound = TransTable.MAX_SCORE;
+        }
+        if (value <= alpha) {
+          upperbound = value;
+        } else if (value >= beta) {
+          lowerbound = value;
+        } else {
+          lowerbound = value;
+          upperbound = value;
         }
+        transTable.store(hash, depth, lowerbound, upperbound, bestMove);
       }
+
+      return value;
+    }
+  }
+
+  /**
+   * Search statistics comparing the parallel search with the serial search
+   * of the same position from an empty transposition table.
+   */
+  public static class SplitStats {
+    public long serialNodes;
+    public long parallelNodes;
+    public long serialNanos;
+    public long parallelNanos;
+
+    /**
+     * @return serial time over parallel time
+     */
+    public double speedup() {
+      return (double) serialNanos / Math.max(1, parallelNanos);
+    }
+
+    /**
+     * @return the fraction of extra nodes the parallel search visited
+     */
+    public double overhead() {
+      return (double) parallelNodes / Math.max(1, serialNodes) - 1.0;
+    }
+
+    public String toString() {
+      return String.format("serial %d nodes %.1f ms, parallel %d nodes %.1f ms, speedup %.2fx, overhead %.1f%%",
+          serialNodes, serialNanos / 1e6, parallelNodes, parallelNanos / 1e6, speedup(), 100 * overhead());
     }
-    return childmoves;
+  }
+
+  private int parallelSearch(Position root) {
+    SplitTask task = new SplitTask(root, true, null, Ply.MAX,
+        Integer.MIN_VALUE, Integer.MAX_VALUE, SEARCH_DEPTH, Ply.MAX, 0);
+    pool.invoke(task);
+    nodes = task.taskNodes;
+    return task.move;
+  }
+
+  /**
+   * Searches a position serially and then in parallel, clearing the
+   * transposition table before each, and reports the difference.
+   * Requires the agent to have been constructed with more than one thread.
+   *
+   * @param board the position to search, as passed to move()
+   * @return the comparison of the two searches
+   * @throws IllegalStateException if the agent searches serially
+   */
+  public SplitStats compare(int[] board) {
+    if (pool == null) {
+      throw new IllegalStateException("compare() needs an agent constructed with more than one thread");
+    }
+    SplitStats stats = new SplitStats();
+    Position root = Position.of(board);
+    long start;
+
+    transTable.clear();
+    ordering.clear();
+    nodes = 0;
+    start = System.nanoTime();
+    searchBoard.set(root);
+    alphaBetaWithMemory(Integer.MIN_VALUE, Integer.MAX_VALUE, SEARCH_DEPTH, Ply.MAX, 0);
+    stats.serialNanos = System.nanoTime() - start;
+    stats.serialNodes = nodes;
+
+    transTable.clear();
+    start = System.nanoTime();
+    parallelSearch(root);
+    stats.parallelNanos = System.nanoTime() - start;
+    stats.parallelNodes = nodes;
+    return stats;
+  }
+
+  /**
+   * Serially searches a position to a fixed depth from an empty
+   * transposition table, for benchmarking.
+   *
+   * @param board the position to search, as passed to move()
+   * @param depth the search depth, at most SEARCH_DEPTH
+   * @return the house chosen
+   */
+  int search(int[] board, int depth) {
+    transTable.clear();
+    ordering.clear();
+    nodes = 0;
+    searchBoard.set(Position.of(board));
+    alphaBetaWithMemory(Integer.MIN_VALUE, Integer.MAX_VALUE, Math.min(depth, SEARCH_DEPTH), Ply.MAX, 0);
+    return rootMove;
+  }
+
+  /**
+   * Sets the endgame tablebase consulted once few enough seeds are left in
+   * the houses. Agents start with Endgame.shared().
+   *
+   * @param endgame the tablebase, or null to search to the end
+   */
+  public void setEndgame(EndgameTable endgame) {
+    this.endgame = endgame;
+  }
+
+  /**
+   * @param enhancedCutoffs true to try TransTable.transpositionCutoff()
+   * before searching a node's children (off by default)
+   */
+  public void setEnhancedCutoffs(boolean enhancedCutoffs) {
+    this.enhancedCutoffs = enhancedCutoffs;
+  }
+
+  /**
+   * Chooses whether reset() empties the transposition table. By default
+   * entries carry over to the next game, where they are used until newer
+   * results replace them.
+   *
+   * @param clearOnReset true to start every game from an empty table
+   */
+  public void setClearOnReset(boolean clearOnReset) {
+    this.clearOnReset = clearOnReset;
+  }
+
+  /**
+   * Saves the transposition table, so that it can be shipped with the
+   * agent and loaded through loadTransTable() or -Dmancala.tt.
+   * Must not be called during a move.
+   *
+   * @param file the file to write
+   * @throws IOException if the file can't be written
+   */
+  public void saveTransTable(File file) throws IOException {
+    transTable.save(file);
+  }
+
+  /**
+   * Replaces the transposition table with one saved by saveTransTable().
+   * Must not be called during a move.
+   *
+   * @param file the file to read
+   * @throws IOException if the file can't be read or isn't a transposition table
+   */
+  public void loadTransTable(File file) throws IOException {
+    transTable = TransTable.load(file);
+  }
+
+  /**
+   * The principal variation of the last move's search, recovered from the
+   * transposition table's best moves. Houses are numbered as on the board
+   * passed to move(), so the opponent's replies are 7-12.
+   *
+   * @return the line the agent expects, starting with the move it played
+   */
+  public int[] principalVariation() {
+    return ordering.principalVariation();
+  }
+
+  /**
+   * Attaches a listener to be sent search statistics after every move.
+   *
+   * @param listener the listener, or null to stop collecting statistics
+   */
+  public void setSearchListener(SearchListener listener) {
+    this.listener = listener;
   }
 
   /**
@@ -298,10 +724,29 @@ public class ABWMAgent implements MancalaAgent {
   public int move(int[] board) {
     int alpha = Integer.MIN_VALUE;
     int beta = Integer.MAX_VALUE;
-    int depth = 12;
-    ChildMove state = new ChildMove(-1, board);
-    MoveScore best = alphaBetaWithMemory(state, alpha, beta, depth, Ply.MAX);
-    return best.move;
+    int depth = SEARCH_DEPTH;
+    int move;
+    transTable.newSearch();
+    ordering.newSearch();
+    if (listener != null) searchStats.reset();
+    searchBoard.set(Position.of(board));
+    if (pool != null) {
+      move = parallelSearch(Position.of(board));
+    } else {
+      stats = (listener != null) ? searchStats : null;
+      nodes = 0;
+      alphaBetaWithMemory(alpha, beta, depth, Ply.MAX, 0);
+      move = rootMove;
+      stats = null;
+    }
+    ordering.recordPrincipalVariation(searchBoard, transTable);
+    if (listener != null) {
+      searchStats.nodes = nodes;
+      searchStats.pvLength = ordering.principalVariation(searchStats.pv);
+      searchStats.iteration(depth);
+      listener.searchFinished(name(), searchStats);
+    }
+    return move;
   }
 
   /**
@@ -315,7 +760,9 @@ public class ABWMAgent implements MancalaAgent {
   /**
    * A method to reset the agent for a new game.
    */
-  public void reset() {}
+  public void reset() {
+    if (clearOnReset) transTable.clear();
+  }
 }
 
 
@@ -0,0 +1,142 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Writes games as compact binary records to a channel, through a
+ * reusable direct buffer that is only written out when full (or on
+ * flush/close), so logging a game allocates nothing per move.
+ *
+ * Each record is a one byte tag followed by its payload:
+ * <pre>
+ *   START   0  u16 length + UTF-8 name of player 1, then the same for player 2
+ *              (names are at most 65535 bytes)
+ *   MOVE    1  u8 player, u8 house
+ *   FORFEIT 2  u8 player
+ *   BOARD   3  14 x u8 seeds, pits 0-13
+ *   RESULT  4  u8 player 1 score, u8 player 2 score
+ * </pre>
+ *
+ * Not thread-safe; use one sink (and channel) per concurrently running game.
+ */
+public class BinaryGameSink implements GameSink, Closeable {
+
+  public static final byte START = 0;
+  public static final byte MOVE = 1;
+  public static final byte FORFEIT = 2;
+  public static final byte BOARD = 3;
+  public static final byte RESULT = 4;
+
+  public static final int MAX_NAME_BYTES = 0xFFFF; //the most a u16 length can describe
+  private static final int BUFFER_BYTES = 64 * 1024;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+  /**
+   * @param channel the channel to write records to, closed by close()
+   */
+  public BinaryGameSink(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * @throws IllegalArgumentException if a name is longer than MAX_NAME_BYTES in UTF-8
+   */
+  public void start(String agent1, String agent2) {
+    byte[] name1 = name(agent1);
+    byte[] name2 = name(agent2);
+    int bytes = 1 + 2 + name1.length + 2 + name2.length;
+    ByteBuffer record = buffer;
+    if (bytes > BUFFER_BYTES) {
+      reserve(BUFFER_BYTES); //drain what's buffered, then write this record on its own
+      record = ByteBuffer.allocate(bytes);
+    } else {
+      reserve(bytes);
+    }
+    record.put(START);
+    record.putShort((short) name1.length).put(name1); //the low 16 bits, read back unsigned
+    record.putShort((short) name2.length).put(name2);
+    if (record != buffer) {
+      record.flip();
+      write(record);
+    }
+  }
+
+  private static byte[] name(String agent) {
+    byte[] name = agent.getBytes(UTF8);
+    if (name.length > MAX_NAME_BYTES) {
+      throw new IllegalArgumentException("agent name of " + name.length
+          + " UTF-8 bytes is longer than the " + MAX_NAME_BYTES + " a START record can hold");
+    }
+    return name;
+  }
+
+  public void move(int player, int house) {
+    reserve(3);
+    buffer.put(MOVE).put((byte) player).put((byte) house);
+  }
+
+  public void forfeit(int player) {
+    reserve(2);
+    buffer.put(FORFEIT).put((byte) player);
+  }
+
+  public void board(int[] board) {
+    reserve(1 + Position.N_PITS);
+    buffer.put(BOARD);
+    for (int i = 0; i < Position.N_PITS; ++i) buffer.put((byte) board[i]);
+  }
+
+  public void result(int store1, int store2) {
+    reserve(3);
+    buffer.put(RESULT).put((byte) store1).put((byte) store2);
+  }
+
+  /**
+   * Writes any buffered records to the channel.
+   *
+   * @throws IOException if the channel write fails
+   */
+  public void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) channel.write(buffer);
+    buffer.clear();
+  }
+
+  /**
+   * Flushes and closes the channel.
+   *
+   * @throws IOException if the channel write or close fails
+   */
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  //makes room for a record, draining the buffer to the channel if needed
+  private void reserve(int bytes) {
+    if (buffer.remaining() < bytes) {
+      try {
+        flush();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  //writes a record too large for the buffer straight to the channel
+  private void write(ByteBuffer record) {
+    try {
+      while (record.hasRemaining()) channel.write(record);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
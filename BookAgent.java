@@ -0,0 +1,74 @@
+/**
+ * Agent that plays from an opening book while the game is in it, and
+ * hands every other position to a search agent.
+ *
+ * A book move is a binary search over the book's keys, so book positions
+ * cost microseconds instead of the search agent's full move budget.
+ */
+public class BookAgent implements MancalaAgent, InstrumentedAgent {
+
+  private final MancalaAgent agent;
+  private final OpeningBook book;
+  long bookMoves; //moves answered from the book since the agent was created
+
+  /**
+   * Constructs an MTDFAgent backed by the book named by the mancala.book
+   * system property (playing as a plain MTDFAgent if there is none).
+   */
+  public BookAgent() {
+    this(new MTDFAgent(), OpeningBook.shared());
+  }
+
+  /**
+   * @param agent the agent to play positions the book doesn't cover
+   * @param book the opening book, or null to always search
+   */
+  public BookAgent(MancalaAgent agent, OpeningBook book) {
+    this.agent = agent;
+    this.book = book;
+  }
+
+  /**
+   * Attaches a listener to the search agent, if it reports statistics.
+   * Book moves are not searches and aren't reported.
+   *
+   * @param listener the listener, or null to stop collecting statistics
+   */
+  public void setSearchListener(SearchListener listener) {
+    if (agent instanceof InstrumentedAgent) {
+      ((InstrumentedAgent) agent).setSearchListener(listener);
+    }
+  }
+
+  /**
+   * Public API call for requesting moves from the agent.
+   *
+   * @param board the current game state
+   * @return the house the agent would like to play from this turn
+   */
+  public int move(int[] board) {
+    if (book != null) {
+      int house = book.move(board);
+      if ((house >= 0) && (board[house] > 0)) {
+        ++bookMoves;
+        return house;
+      }
+    }
+    return agent.move(board);
+  }
+
+  /**
+   * The agents name.
+   * @return a hardcoded string, the name of the agent.
+   */
+  public String name() {
+    return agent.name() + " (book)";
+  }
+
+  /**
+   * A method to reset the agent for a new game.
+   */
+  public void reset() {
+    agent.reset();
+  }
+}
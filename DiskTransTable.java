@@ -0,0 +1,127 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Transposition table kept in a memory-mapped file, for solving runs that
+ * need more entries than fit in the heap and must survive a restart.
+ *
+ * The layout and replacement scheme are those of TransTable (buckets of a
+ * depth-preferred and an always-replace entry, each a key xored with its
+ * packed data word), and data words are decoded with TransTable's static
+ * accessors. The file is split into mappings of at most 1 GiB, as a
+ * single MappedByteBuffer can't exceed 2 GiB.
+ *
+ * A crash can leave entries half written, but those fail the key check
+ * and read as misses, so whatever reached the disk is always safe to reuse.
+ * Calling force() makes a consistent checkpoint of the whole table.
+ */
+public final class DiskTransTable {
+
+  static final int BUCKET_BYTES = TransTable.BUCKET_LONGS * 8;
+  private static final int SEGMENT_SHIFT = 30; //1 GiB mappings
+  private static final int BUCKET_SHIFT = 5; //log2(BUCKET_BYTES)
+
+  private final MappedByteBuffer[] segments;
+  private final long bucketMask;
+
+  /**
+   * Opens a table file, creating it if it doesn't exist. An existing
+   * file keeps its size and its entries.
+   *
+   * @param file the table file
+   * @param megabytes the size of a new table in MiB, rounded down to a power of two
+   * @throws IOException if the file can't be created or mapped
+   */
+  public DiskTransTable(File file, int megabytes) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      long bytes = raf.length();
+      if (bytes == 0) {
+        bytes = Long.highestOneBit(Math.max(1L, (long) megabytes) << 20);
+        raf.setLength(bytes);
+      } else if ((Long.bitCount(bytes) != 1) || (bytes < BUCKET_BYTES)) {
+        throw new IOException(file + " is not a transposition table");
+      }
+      bucketMask = (bytes >> BUCKET_SHIFT) - 1;
+      long segmentBytes = Math.min(bytes, 1L << SEGMENT_SHIFT);
+      segments = new MappedByteBuffer[(int) (bytes / segmentBytes)];
+      FileChannel channel = raf.getChannel();
+      for (int i = 0; i < segments.length; ++i) {
+        segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentBytes, segmentBytes);
+      }
+    } finally {
+      raf.close(); //the mappings stay valid
+    }
+  }
+
+  /**
+   * @return the number of entries the table can hold
+   */
+  public long capacity() {
+    return (bucketMask + 1) * 2;
+  }
+
+  /**
+   * Looks up a position.
+   *
+   * @param key the Zobrist hash of the position
+   * @return the packed data word, or 0 if the position is not in the table
+   */
+  public long probe(long key) {
+    long offset = (key & bucketMask) << BUCKET_SHIFT;
+    MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+    int i = (int) (offset & ((1L << SEGMENT_SHIFT) - 1));
+    long data = segment.getLong(i + 8);
+    if ((segment.getLong(i) ^ data) == key) return data;
+    data = segment.getLong(i + 24);
+    if ((segment.getLong(i + 16) ^ data) == key) return data;
+    return 0;
+  }
+
+  /**
+   * Stores a search result, replacing the depth-preferred entry if this
+   * search is at least as deep and otherwise the always-replace entry.
+   *
+   * @param key the Zobrist hash of the position
+   * @param depth the depth (or, for a solver, the work) behind the result
+   * @param lower the lower bound on the position's value
+   * @param upper the upper bound on the position's value
+   * @param move the best move found, or TransTable.NO_MOVE
+   */
+  public void store(long key, int depth, int lower, int upper, int move) {
+    long offset = (key & bucketMask) << BUCKET_SHIFT;
+    MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+    int i = (int) (offset & ((1L << SEGMENT_SHIFT) - 1));
+    long data = TransTable.pack(depth, lower, upper, move);
+    long deepData = segment.getLong(i + 8);
+    long deepKey = segment.getLong(i) ^ deepData;
+    long lastData = segment.getLong(i + 24);
+    boolean lastOther = (lastData != 0) && ((segment.getLong(i + 16) ^ lastData) != key);
+    if ((deepKey == key) || (depth >= TransTable.depth(deepData))) {
+      segment.putLong(i, key ^ data);
+      segment.putLong(i + 8, data);
+      if ((deepKey != key) && (deepData != 0)) {
+        //demote the displaced deep entry to the always-replace slot
+        segment.putLong(i + 16, deepKey ^ deepData);
+        segment.putLong(i + 24, deepData);
+      } else if ((lastData != 0) && !lastOther) {
+        //drop the stale always-replace copy of this position
+        segment.putLong(i + 16, 0);
+        segment.putLong(i + 24, 0);
+      }
+      return;
+    }
+    segment.putLong(i + 16, key ^ data);
+    segment.putLong(i + 24, data);
+  }
+
+  /**
+   * Writes every modified page back to the file.
+   */
+  public void force() {
+    for (MappedByteBuffer segment : segments) segment.force();
+  }
+}
@@ -0,0 +1,236 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Endgame tablebase for Kalah(6,3): the exact outcome of every position
+ * with at most maxSeeds seeds left in the houses.
+ *
+ * Seeds already in the stores can't move again, so the rest of the game
+ * depends only on the 12 houses and who is to move. For each house
+ * distribution (normalised so the player to move owns the first six
+ * houses) the table holds how many of the remaining seeds the player to
+ * move will bank with perfect play by both sides. Positions are solved in
+ * order of increasing seed count, so a move that banks seeds always leads
+ * to a solved position; moves that bank nothing keep each player's seeds
+ * on their own side and only ever move them anticlockwise, so the
+ * remaining dependencies are acyclic and are solved by memoised recursion.
+ *
+ * Positions are ranked densely by PositionIndex, so the file is one byte
+ * per position with no gaps or keys. Passing bits = 4 writes the packed
+ * format read by MappedEndgame instead.
+ *
+ * Usage: java Endgame maxSeeds file [bits]
+ */
+public class Endgame implements EndgameTable {
+
+  private static final int HOUSES = PositionIndex.HOUSES;
+  static final int MAGIC = 0x4B544231; //"KTB1"
+  static final int HEADER_BYTES = 16;
+  private static final byte UNKNOWN = -1;
+
+  private static EndgameTable shared;
+  private static boolean sharedLoaded;
+
+  private final int maxSeeds;
+  private final byte[] values; //seeds banked by the player to move, by rank
+
+  private Endgame(int maxSeeds, byte[] values) {
+    this.maxSeeds = maxSeeds;
+    this.values = values;
+  }
+
+  /**
+   * The tablebase named by the mancala.endgame system property, mapped
+   * once per JVM and shared by every agent (and, through the page cache,
+   * by every JVM on the host).
+   *
+   * @return the shared tablebase, or null if none is configured or it can't be read
+   */
+  public static synchronized EndgameTable shared() {
+    if (!sharedLoaded) {
+      sharedLoaded = true;
+      String path = System.getProperty("mancala.endgame");
+      if (path != null) {
+        try {
+          shared = MappedEndgame.open(new File(path));
+        } catch (IOException e) {
+          System.err.println("Endgame tablebase " + path + " not loaded: " + e.getMessage());
+        }
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * @return the largest number of seeds in the houses the table covers
+   */
+  public int maxSeeds() {
+    return maxSeeds;
+  }
+
+  public boolean covers(SearchBoard board) {
+    return PositionIndex.seeds(board) <= maxSeeds;
+  }
+
+  public int finalDifference(SearchBoard board) {
+    int seeds = PositionIndex.seeds(board);
+    int value = 2 * values[(int) PositionIndex.rank(board)] - seeds; //to move's share less the opponent's
+    int stores = board.pit(Position.SOUTH_STORE) - board.pit(Position.NORTH_STORE);
+    return stores + (board.southToMove() ? value : -value);
+  }
+
+  /**
+   * @param index the rank of a distribution of at most maxSeeds seeds
+   * @return the seeds the player to move banks from it with perfect play
+   */
+  int banked(long index) {
+    return values[(int) index];
+  }
+
+  /**
+   * Solves every position with up to maxSeeds seeds in the houses.
+   *
+   * @param maxSeeds the most seeds in the houses, at most 18 or so in a normal heap
+   * @return the solved table
+   */
+  public static Endgame generate(int maxSeeds) {
+    long n = PositionIndex.count(maxSeeds);
+    if (n > Integer.MAX_VALUE) throw new IllegalArgumentException("too many positions for " + maxSeeds + " seeds");
+    byte[] values = new byte[(int) n];
+    java.util.Arrays.fill(values, UNKNOWN);
+    Endgame table = new Endgame(maxSeeds, values);
+    int[] houses = new int[HOUSES];
+    for (int s = 0; s <= maxSeeds; ++s) {
+      table.solveAll(houses, 0, s);
+    }
+    return table;
+  }
+
+  //enumerates every distribution of the remaining seeds over houses i.. and solves it
+  private void solveAll(int[] houses, int i, int remaining) {
+    if (i == HOUSES - 1) {
+      houses[i] = remaining;
+      solve(houses);
+      return;
+    }
+    for (int x = 0; x <= remaining; ++x) {
+      houses[i] = x;
+      solveAll(houses, i + 1, remaining - x);
+    }
+  }
+
+  //the value (mover's banked seeds less the opponent's) of a position with the mover to play
+  private int solve(int[] houses) {
+    int seeds = 0;
+    for (int i = 0; i < HOUSES; ++i) seeds += houses[i];
+    int index = (int) PositionIndex.rank(houses);
+    if (values[index] != UNKNOWN) return 2 * values[index] - seeds;
+
+    int[] board = new int[Position.N_PITS];
+    for (int i = 0; i < 6; ++i) {
+      board[i] = houses[i];
+      board[i + 7] = houses[i + 6];
+    }
+    Position position = Position.of(board);
+    int best;
+    if (position.terminal()) {
+      best = side(position, 0) - side(position, 7);
+    } else {
+      best = Integer.MIN_VALUE;
+      int[] next = new int[HOUSES];
+      for (int m = 0; m < 6; ++m) {
+        if (position.pit(m) == 0) continue;
+        Position child = position.sow(m);
+        int value = child.pit(Position.SOUTH_STORE); //the opponent's store can't gain on our move
+        if (child.terminal()) {
+          value += side(child, 0) - side(child, 7);
+        } else if (position.landing(m) == Position.SOUTH_STORE) {
+          for (int i = 0; i < 6; ++i) {
+            next[i] = child.pit(i);
+            next[i + 6] = child.pit(i + 7);
+          }
+          value += solve(next);
+        } else {
+          for (int i = 0; i < 6; ++i) {
+            next[i] = child.pit(i + 7);
+            next[i + 6] = child.pit(i);
+          }
+          value -= solve(next);
+        }
+        best = Math.max(best, value);
+      }
+    }
+    values[index] = (byte) ((best + seeds) / 2);
+    return best;
+  }
+
+  private static int side(Position position, int first) {
+    int n = 0;
+    for (int i = first; i < first + 6; ++i) n += position.pit(i);
+    return n;
+  }
+
+  /**
+   * Writes the table to a file.
+   *
+   * @param file the file to write
+   * @throws IOException if the file can't be written
+   */
+  public void save(File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(maxSeeds);
+      out.writeLong(values.length);
+      out.write(values);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads a table written by save().
+   *
+   * @param file the file to read
+   * @return the table
+   * @throws IOException if the file can't be read or isn't a tablebase
+   */
+  public static Endgame load(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC) throw new IOException(file + " is not an endgame tablebase");
+      int maxSeeds = in.readInt();
+      long n = in.readLong();
+      if (n != PositionIndex.count(maxSeeds)) throw new IOException(file + " has the wrong number of positions");
+      byte[] values = new byte[(int) n];
+      in.readFully(values);
+      return new Endgame(maxSeeds, values);
+    } finally {
+      in.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if ((args.length != 2) && (args.length != 3)) {
+      System.err.println("Usage: java Endgame maxSeeds file [bits]");
+      System.exit(1);
+    }
+    int maxSeeds = Integer.parseInt(args[0]);
+    int bits = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+    long start = System.currentTimeMillis();
+    Endgame table = generate(maxSeeds);
+    if (bits == 8) {
+      table.save(new File(args[1]));
+    } else {
+      MappedEndgame.write(table, new File(args[1]), bits);
+    }
+    System.out.println("Solved " + table.values.length + " positions with up to " + maxSeeds
+        + " seeds in " + (System.currentTimeMillis() - start) + " ms");
+  }
+}
@@ -0,0 +1,27 @@
+/**
+ * Read access to an endgame tablebase, whether held in the heap (Endgame)
+ * or served from a memory-mapped file (MappedEndgame).
+ *
+ * Implementations must be safe to read from many search threads at once.
+ */
+public interface EndgameTable {
+
+  /**
+   * @return the largest number of seeds in the houses the table covers
+   */
+  int maxSeeds();
+
+  /**
+   * @param board the search board
+   * @return true if the table holds the value of the board's position
+   */
+  boolean covers(SearchBoard board);
+
+  /**
+   * The final score of a covered position with perfect play.
+   *
+   * @param board the search board, which must be covered
+   * @return south's final store minus north's final store
+   */
+  int finalDifference(SearchBoard board);
+}
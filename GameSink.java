@@ -0,0 +1,48 @@
+/**
+ * Receives the events of a game as it is played, so transcripts can be
+ * streamed (or dropped) rather than built up in memory.
+ *
+ * Players are numbered as in MancalaGame: player 1 owns houses 0-5 and
+ * store 6, player 2 owns houses 7-12 and store 13. Board arrays passed to
+ * a sink belong to the game and are only valid for the duration of the call.
+ */
+public interface GameSink {
+
+  /**
+   * A game is starting.
+   *
+   * @param agent1 the name of player 1
+   * @param agent2 the name of player 2
+   */
+  public void start(String agent1, String agent2);
+
+  /**
+   * A player has nominated a move, before it is checked for legality.
+   *
+   * @param player 1 or 2
+   * @param house the house nominated, in board indices (0-5 or 7-12 if legal)
+   */
+  public void move(int player, int house);
+
+  /**
+   * The last move was illegal and the player has forfeited the game.
+   *
+   * @param player 1 or 2
+   */
+  public void forfeit(int player);
+
+  /**
+   * The board after a move.
+   *
+   * @param board the 14 pit board, not to be retained
+   */
+  public void board(int[] board);
+
+  /**
+   * The game is over.
+   *
+   * @param store1 player 1's final score
+   * @param store2 player 2's final score
+   */
+  public void result(int store1, int store2);
+}
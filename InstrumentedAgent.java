@@ -0,0 +1,16 @@
+/**
+ * An agent that can report statistics on its searches.
+ */
+public interface InstrumentedAgent {
+
+  /**
+   * Attaches a listener to be sent statistics after every move, or
+   * detaches it. Statistics are only collected while a listener is attached.
+   *
+   * Parallel search modes report only nodes, depth and time, as their
+   * workers don't share the counters.
+   *
+   * @param listener the listener, or null to stop collecting statistics
+   */
+  public void setSearchListener(SearchListener listener);
+}
@@ -0,0 +1,309 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Monte Carlo Tree Search (UCT) agent for Mancala
+ *
+ * Every thread repeatedly walks the shared tree from the root by the UCB1
+ * rule, expands the leaf it reaches, plays a random game out from there
+ * and adds the result to every node on its path (tree parallelism).
+ *
+ * The tree is stored in preallocated arrays indexed by node, not in node
+ * objects, with visit and score counters in atomic arrays so threads never
+ * lock. A visit is counted on the way down and its score only on the way
+ * back up, so a node being searched by one thread looks like a loss to the
+ * others (a virtual loss) until the playout finishes, which spreads the
+ * threads over different branches. A node's children are allocated as one
+ * block by whichever thread wins a compare-and-set on its state; threads
+ * that lose play out from the node instead of waiting.
+ *
+ * Scores are kept in half points for the player who made the move into a
+ * node (2 for a win, 1 for a draw), and the move played is the root's most
+ * visited child. Searches for the same 100ms as MTDFAgent.
+ */
+public class MCTSAgent implements MancalaAgent, InstrumentedAgent {
+
+  private static long MAX_RUN_TIME = 100; //time budget per move in milliseconds
+  private static int MAX_NODES = 1 << 20; //default tree capacity
+  private static int MAX_TREE_DEPTH = 256; //leaves are never expanded below this
+  private static double EXPLORATION = Math.sqrt(2);
+
+  private static final int UNEXPANDED = 0;
+  private static final int EXPANDING = 1;
+  private static final int EXPANDED = 2;
+
+  //the tree, node 0 is the root
+  private final int capacity;
+  private final byte[] move; //the house played into each node
+  private final int[] firstChild; //children are contiguous, written before the state is published
+  private final byte[] childCount;
+  private final AtomicIntegerArray state;
+  private final AtomicIntegerArray visits;
+  private final AtomicIntegerArray score;
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final Worker mainWorker;
+  private final Worker[] helpers;
+  private ExecutorService helperPool;
+  private long deadline;
+  private Position root;
+  private SearchListener listener;
+  private final SearchStats searchStats = new SearchStats();
+  long playouts; //playouts made by all threads in the last search
+
+  /**
+   * Constructs a single-threaded agent with the default tree capacity.
+   */
+  public MCTSAgent() {
+    this(1);
+  }
+
+  /**
+   * @param threads the number of search threads
+   */
+  public MCTSAgent(int threads) {
+    this(threads, MAX_NODES);
+  }
+
+  /**
+   * Constructs an instance of the AI agent for gameplay, allocating the
+   * whole tree up front.
+   *
+   * @param threads the number of search threads
+   * @param maxNodes the tree capacity, once full leaves are played out but not expanded
+   */
+  public MCTSAgent(int threads, int maxNodes) {
+    capacity = Math.max(1 + SearchBoard.MAX_MOVES, maxNodes);
+    move = new byte[capacity];
+    firstChild = new int[capacity];
+    childCount = new byte[capacity];
+    state = new AtomicIntegerArray(capacity);
+    visits = new AtomicIntegerArray(capacity);
+    score = new AtomicIntegerArray(capacity);
+
+    mainWorker = new Worker(1);
+    helpers = new Worker[Math.max(0, threads - 1)];
+    for (int i = 0; i < helpers.length; ++i) {
+      helpers[i] = new Worker(i + 2);
+    }
+    if (helpers.length > 0) {
+      helperPool = Executors.newFixedThreadPool(helpers.length, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "MCTS worker");
+          t.setDaemon(true); //never keep the game alive
+          return t;
+        }
+      });
+    }
+  }
+
+  /**
+   * Empties the tree, clearing only the nodes the last search used.
+   */
+  private void clearTree() {
+    int used = Math.min(size.get(), capacity);
+    for (int i = 0; i < used; ++i) {
+      state.set(i, UNEXPANDED);
+      visits.set(i, 0);
+      score.set(i, 0);
+    }
+    size.set(1); //the root
+  }
+
+  /**
+   * Claims a node's children: allocates one block for them and publishes
+   * it, unless another thread got there first or the tree is full.
+   *
+   * @param node the leaf to expand
+   * @param board the search board at the leaf
+   * @param ply the move buffer to generate into
+   * @return true if this thread expanded the node
+   */
+  private boolean expand(int node, SearchBoard board, int ply) {
+    if (!state.compareAndSet(node, UNEXPANDED, EXPANDING)) return false;
+    int n = board.generate(ply, board.southToMove());
+    int first = size.getAndAdd(n);
+    if (first + n > capacity) {
+      state.set(node, UNEXPANDED); //full, leave it a leaf for good
+      return false;
+    }
+    int[] moves = board.moves(ply);
+    for (int i = 0; i < n; ++i) move[first + i] = (byte) moves[i];
+    firstChild[node] = first;
+    childCount[node] = (byte) n;
+    state.set(node, EXPANDED); //volatile write publishes the block
+    return true;
+  }
+
+  /**
+   * The per-thread search state: a board for walking the tree, the path
+   * walked and a playout kernel for rollouts.
+   */
+  class Worker implements Runnable {
+    private final SearchBoard board = new SearchBoard(MAX_TREE_DEPTH + 1);
+    private final int[] path = new int[MAX_TREE_DEPTH + 2];
+    private final boolean[] southMoved = new boolean[MAX_TREE_DEPTH + 2];
+    private final Playout playout;
+    private long workerPlayouts;
+    private int deepest;
+
+    Worker(long id) {
+      playout = new Playout(0x9E3779B97F4A7C15L * id);
+    }
+
+    /**
+     * Searches until the move's time is up.
+     */
+    public void run() {
+      workerPlayouts = 0;
+      deepest = 0;
+      board.set(root);
+      do {
+        playout(); //a few microseconds, so the clock is read after every one
+      } while (System.nanoTime() < deadline);
+    }
+
+    /**
+     * One iteration: select, expand, play out and back up.
+     */
+    private void playout() {
+      int node = 0;
+      int depth = 0;
+      path[0] = 0;
+      visits.incrementAndGet(0);
+
+      //select by UCB1, counting visits on the way down as virtual losses
+      while ((state.get(node) == EXPANDED) && !board.terminal()) {
+        node = select(node);
+        southMoved[depth + 1] = board.southToMove();
+        board.make(move[node]);
+        path[++depth] = node;
+        visits.incrementAndGet(node);
+      }
+
+      //expand the leaf and step into its first child
+      if (!board.terminal() && (depth < MAX_TREE_DEPTH) && expand(node, board, depth)) {
+        node = firstChild[node];
+        southMoved[depth + 1] = board.southToMove();
+        board.make(move[node]);
+        path[++depth] = node;
+        visits.incrementAndGet(node);
+      }
+      deepest = Math.max(deepest, depth);
+
+      //play out from the leaf, then score every node for the player who moved into it
+      int southScore = Playout.halfPoints(playout.play(board));
+      for (int i = 1; i <= depth; ++i) {
+        score.addAndGet(path[i], southMoved[i] ? southScore : 2 - southScore);
+      }
+      for (int i = 0; i < depth; ++i) board.unmake();
+      ++workerPlayouts;
+    }
+
+    private int select(int node) {
+      int first = firstChild[node];
+      int n = childCount[node];
+      double logParent = Math.log(Math.max(1, visits.get(node)));
+      int best = first;
+      double bestValue = Double.NEGATIVE_INFINITY;
+      for (int c = first; c < first + n; ++c) {
+        int v = visits.get(c);
+        if (v == 0) return c; //try every child once
+        double value = score.get(c) / (2.0 * v) + EXPLORATION * Math.sqrt(logParent / v);
+        if (value > bestValue) {
+          bestValue = value;
+          best = c;
+        }
+      }
+      return best;
+    }
+  }
+
+  /**
+   * Attaches a listener to be sent search statistics after every move.
+   * Nodes are reported as playouts and depth as the deepest path walked.
+   *
+   * @param listener the listener, or null to stop collecting statistics
+   */
+  public void setSearchListener(SearchListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Public API call for requesting moves from the agent.
+   *
+   * @param board the current game state
+   * @return the house the agent would like to play from this turn
+   */
+  public int move(int[] board) {
+    deadline = System.nanoTime() + MAX_RUN_TIME * 1000000; //clearing the tree counts against the budget
+    root = Position.of(board);
+    clearTree();
+    if (listener != null) searchStats.reset();
+
+    //a forced move needs no search
+    int legal = 0, only = 0;
+    for (int i = 0; i < 6; ++i) {
+      if (board[i] > 0) {
+        ++legal;
+        only = i;
+      }
+    }
+    if (legal == 1) {
+      playouts = 0;
+      if (listener != null) { //still reported, as the other agents do
+        searchStats.iteration(0);
+        listener.searchFinished(name(), searchStats);
+      }
+      return only;
+    }
+
+    Future<?>[] running = new Future<?>[helpers.length];
+    for (int i = 0; i < helpers.length; ++i) running[i] = helperPool.submit(helpers[i]);
+    mainWorker.run();
+    int deepest = mainWorker.deepest;
+    playouts = mainWorker.workerPlayouts;
+    for (int i = 0; i < helpers.length; ++i) {
+      try {
+        running[i].get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (java.util.concurrent.ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+      playouts += helpers[i].workerPlayouts;
+      deepest = Math.max(deepest, helpers[i].deepest);
+    }
+
+    //the most visited root child
+    int first = firstChild[0];
+    int best = first;
+    for (int c = first; c < first + childCount[0]; ++c) {
+      if (visits.get(c) > visits.get(best)) best = c;
+    }
+
+    if (listener != null) {
+      searchStats.nodes = playouts;
+      searchStats.iteration(deepest);
+      listener.searchFinished(name(), searchStats);
+    }
+    return move[best];
+  }
+
+  /**
+   * The agents name.
+   * @return a hardcoded string, the name of the agent.
+   */
+  public String name() {
+    return "Monte Carlo Tree Search Agent";
+  }
+
+  /**
+   * A method to reset the agent for a new game.
+   */
+  public void reset() {}
+}
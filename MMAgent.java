@@ -1,13 +1,21 @@
 import java.util.HashMap;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Basic Minimax search for Mancala
  * 
  * OOP version for passing results
+ *
+ * Optionally searches each root move on its own worker thread. Minimax
+ * values don't depend on search order, so the move choice is unchanged.
  */
-public class MMAgent implements MancalaAgent {
+public class MMAgent implements MancalaAgent, InstrumentedAgent {
 
   static enum Ply {MAX, MIN};
 
@@ -23,36 +31,70 @@ public class MMAgent implements MancalaAgent {
 
   static class ChildMove {
     public int move;
-    public int[] state;
+    public Position state;
 
-    public ChildMove(int move, int[] state) {
+    public ChildMove(int move, Position state) {
       this.move = move;
       this.state = state;
     }
   }
 
-  private boolean terminal(int[] state) {
-    //if south empty then state is terminal
-    int count = 0;
-    for (int i = 0; i < 6; ++i) count += state[i];
-    if (count == 0) return true;
+  /**
+   * Searches one root move, remembering the nodes it visited.
+   */
+  class RootSearch implements Callable<MoveScore> {
+    private final ChildMove child;
+    private final int depth;
+    private final Searcher searcher = new Searcher();
+
+    RootSearch(ChildMove child, int depth) {
+      this.child = child;
+      this.depth = depth;
+    }
+
+    public MoveScore call() {
+      return searcher.minimax(child, depth, Ply.MIN);
+    }
+  }
 
-    //if north empty then state is terminal
-    count = 0;
-    for (int i = 7; i < 13; ++i) count += state[i];
-    if (count == 0) return true;
+  private static int SEARCH_DEPTH = 5;
+  private ExecutorService pool; //null for a serial search
+  long nodes; //nodes visited by the last search
+  private final Searcher serial = new Searcher(); //the calling thread's search
+  private SearchListener listener;
+  private final SearchStats searchStats = new SearchStats();
 
-    //else state not terminal
-    return false;
+  /**
+   * Constructs a serial agent.
+   */
+  public MMAgent() {
+    this(1);
+  }
+
+  /**
+   * Constructs an agent that searches each root move on its own worker thread.
+   *
+   * @param threads the number of worker threads, 1 for a serial search
+   */
+  public MMAgent(int threads) {
+    if (threads > 1) {
+      pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "Minimax worker");
+          t.setDaemon(true); //never keep the game alive
+          return t;
+        }
+      });
+    }
   }
 
-  private int evaluate(int[] state) {
+  int evaluate(Position state) {
     int score = 0;
 
     //check endgame conditions
-    if (terminal(state)) {
-      for (int i = 0; i < 7; ++i) score += state[i];
-      for (int i = 7; i < 14; ++i) score -= state[i];
+    if (state.terminal()) {
+      for (int i = 0; i < 7; ++i) score += state.pit(i);
+      for (int i = 7; i < 14; ++i) score -= state.pit(i);
 
       if (score > 0) {
         return 100; //victory
@@ -65,140 +107,148 @@ public class MMAgent implements MancalaAgent {
 
     //calculate board value
     for (int i = 0; i < 6; ++i) {
-      if ((state[i] == 0) && (state[12-i] > 0)) { //empty house rule
-        score += state[12-i] / 2 + 1; //potential empty house captures are worth half
+      if ((state.pit(i) == 0) && (state.pit(12-i) > 0)) { //empty house rule
+        score += state.pit(12-i) / 2 + 1; //potential empty house captures are worth half
       } else {
-        score += state[i]; //house seeds have standard value
+        score += state.pit(i); //house seeds have standard value
       }
     }
-    score += 2*state[6]; //siloed seeds are double
+    score += 2*state.pit(6); //siloed seeds are double
 
     for (int i = 7; i < 13; ++i) {
-      if ((state[i] == 0) && (state[12-i] > 0)) {
-        score -= state[12-i] / 2 + 1;
+      if ((state.pit(i) == 0) && (state.pit(12-i) > 0)) {
+        score -= state.pit(12-i) / 2 + 1;
       } else {
-        score -= state[i];
+        score -= state.pit(i);
       }
     }
-    score -= 2*state[13];
+    score -= 2*state.pit(13);
 
     return score;
   }
 
-  private MoveScore minimax(ChildMove move, int depth, Ply step) {
-    //base case
-    if ((depth == 0) || terminal(move.state)) {
-      return new MoveScore(move.move, evaluate(move.state));
-    }
+  /**
+   * One thread's search, counting the nodes it visits on its own so that
+   * root-parallel workers never write to shared state.
+   */
+  class Searcher {
+    long nodes;
 
-    int value, bestMove = 0;
-    MoveScore searchResult;
-    //recursive
-    if (step == Ply.MAX) { //max step
-      value = Integer.MIN_VALUE;
-      for (ChildMove child : children(move, Ply.MAX, false)) {
-        searchResult = minimax(child, depth - 1, Ply.MIN);
-        if (searchResult.score >= value) {
-          value = searchResult.score;
-          bestMove = child.move;
-        }
+    MoveScore minimax(ChildMove move, int depth, Ply step) {
+      ++nodes;
+
+      //base case
+      if ((depth == 0) || move.state.terminal()) {
+        return new MoveScore(move.move, evaluate(move.state));
       }
-    } else { //min step
-      value = Integer.MAX_VALUE;
-      for (ChildMove child : children(move, Ply.MIN, false)) {
-        searchResult = minimax(child, depth - 1, Ply.MAX);
-        if (searchResult.score <= value) {
-          value = searchResult.score;
-          bestMove = child.move;
+
+      int value, bestMove = 0;
+      MoveScore searchResult;
+      //recursive
+      if (step == Ply.MAX) { //max step
+        value = Integer.MIN_VALUE;
+        for (ChildMove child : children(move, Ply.MAX, false)) {
+          searchResult = minimax(child, depth - 1, Ply.MIN);
+          if (searchResult.score >= value) {
+            value = searchResult.score;
+            bestMove = child.move;
+          }
+        }
+      } else { //min step
+        value = Integer.MAX_VALUE;
+        for (ChildMove child : children(move, Ply.MIN, false)) {
+          searchResult = minimax(child, depth - 1, Ply.MAX);
+          if (searchResult.score <= value) {
+            value = searchResult.score;
+            bestMove = child.move;
+          }
         }
       }
-    }
 
-    return new MoveScore(bestMove, value);
+      return new MoveScore(bestMove, value);
+    }
   }
 
   private ArrayList<ChildMove> children(ChildMove parent, Ply step, boolean extraTurn) {
     ArrayList<ChildMove> childmoves = new ArrayList<ChildMove>();
     ChildMove child;
+    int first = (step == Ply.MAX) ? 0 : 7; //our houses or enemy houses
+    int store = (step == Ply.MAX) ? Position.SOUTH_STORE : Position.NORTH_STORE;
 
-    if (step == Ply.MAX) { //our moves
-      for (int i = 0; i < 6; ++i) {
-        if (parent.state[i] > 0) {
-          //move is valid
-          if (extraTurn) { // if extra turn, treat as same move as parent
-            child = new ChildMove(parent.move, Arrays.copyOf(parent.state, 14));
-          } else {
-            child = new ChildMove(i, Arrays.copyOf(parent.state, 14));
-          }
-          //sow seeds from i
-          int j = i;
-          int seeds = parent.state[i];
-          child.state[i] = 0;
-          while(seeds > 0) {
-            ++j;
-            j %= 14;
-            if (j < 13) { //don't place in opponent store
-              --seeds;
-              child.state[j] += 1;
-            }
-          }
-          if (j == 6) { //extra turn
-            if (terminal(child.state)) { //if move ends the game it can't give an extra turn
-              childmoves.add(child);
-            } else { //recursively find extra move children of this state
-              childmoves.addAll(children(child, step, true));
-            }
-          } else {
-            if ((j >= 0) && (j <= 5) && (child.state[j] == 1) && (child.state[12-j] > 0)) { //empty house rule
-              child.state[6] = child.state[6] + child.state[12-j] + 1;
-              child.state[j] = 0;
-              child.state[12-j] = 0;
-            }
-            childmoves.add(child);
-          }
-        }
-      }
-    } else { //enemy moves
-      for (int i = 7; i < 13; ++i) {
-        if (parent.state[i] > 0) {
-          //move is valid
-          if (extraTurn) {
-            child = new ChildMove(parent.move, Arrays.copyOf(parent.state, 14));
-          } else {
-            child = new ChildMove(i, Arrays.copyOf(parent.state, 14));
-          }
-          //sow seeds from i
-          int j = i;
-          int seeds = parent.state[i];
-          child.state[i] = 0;
-          while(seeds > 0) {
-            ++j;
-            j %= 14;
-            if (j < 6) { //don't place in our store
-              --seeds;
-              child.state[j] += 1;
-            }
-          }
-          if (j == 13) { //extra turn
-            if (terminal(child.state)) { //if move ends the game it can't give an extra turn
-              childmoves.add(child);
-            } else { //recursively find extra move children of this state
-              childmoves.addAll(children(child, step, true));
-            }
-          } else {
-            if ((j >= 7) && (j <= 12) && (child.state[j] == 1) && (child.state[12-j] > 0)) { //empty house rule
-              child.state[13] = child.state[13] + child.state[12-j] + 1;
-              child.state[j] = 0;
-              child.state[12-j] = 0;
-            }
-            childmoves.add(child);
-          }
+    for (int i = first; i < first + 6; ++i) {
+      if (parent.state.pit(i) > 0) {
+        //move is valid, if extra turn treat as same move as parent
+        child = new ChildMove(extraTurn ? parent.move : i, parent.state.sow(i));
+        if ((parent.state.landing(i) == store) && !child.state.terminal()) {
+          //extra turn, recursively find extra move children of this state
+          //(if the move ends the game it can't give an extra turn)
+          childmoves.addAll(children(child, step, true));
+        } else {
+          childmoves.add(child);
         }
       }
     }
     return childmoves;
   }
 
+  private MoveScore rootParallel(ChildMove root, int depth) {
+    ArrayList<ChildMove> rootChildren = children(root, Ply.MAX, false);
+    ArrayList<RootSearch> searches = new ArrayList<RootSearch>();
+    ArrayList<Future<MoveScore>> results = new ArrayList<Future<MoveScore>>();
+    for (ChildMove child : rootChildren) {
+      RootSearch search = new RootSearch(child, depth - 1);
+      searches.add(search);
+      results.add(pool.submit(search));
+    }
+
+    //pick the move exactly as the serial max step would
+    int value = Integer.MIN_VALUE, bestMove = 0, score;
+    for (int i = 0; i < rootChildren.size(); ++i) {
+      score = await(results.get(i)).score;
+      if (score >= value) {
+        value = score;
+        bestMove = rootChildren.get(i).move;
+      }
+    }
+    for (RootSearch search : searches) nodes += search.searcher.nodes; //every worker has finished
+    return new MoveScore(bestMove, value);
+  }
+
+  private static <T> T await(Future<T> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Serially searches a position to a fixed depth, for benchmarking.
+   *
+   * @param board the position to search, as passed to move()
+   * @param depth the search depth
+   * @return the house chosen
+   */
+  int search(int[] board, int depth) {
+    ChildMove root = new ChildMove(-1, Position.of(board));
+    serial.nodes = 0;
+    int move = serial.minimax(root, depth, Ply.MAX).move;
+    nodes = serial.nodes;
+    return move;
+  }
+
+  /**
+   * Attaches a listener to be sent search statistics after every move.
+   *
+   * @param listener the listener, or null to stop collecting statistics
+   */
+  public void setSearchListener(SearchListener listener) {
+    this.listener = listener;
+  }
+
   /**
    * Allows the agent to nominate the house the agent would like to move seeds from. 
    * The agent will allways have control of houses 0-5 with store at 6. 
@@ -214,7 +264,22 @@ public class MMAgent implements MancalaAgent {
    * @return the house the agent would like to move the seeds from this turn.
    */
   public int move(int[] board) {
-    MoveScore best = minimax(new ChildMove(-1, board), 8, Ply.MAX);
+    nodes = 0;
+    serial.nodes = 0;
+    ChildMove root = new ChildMove(-1, Position.of(board));
+    MoveScore best;
+    if (listener != null) searchStats.reset();
+    if ((pool != null) && !root.state.terminal()) {
+      best = rootParallel(root, SEARCH_DEPTH);
+    } else {
+      best = serial.minimax(root, SEARCH_DEPTH, Ply.MAX);
+    }
+    nodes += serial.nodes;
+    if (listener != null) {
+      searchStats.nodes = nodes;
+      searchStats.iteration(SEARCH_DEPTH);
+      listener.searchFinished(name(), searchStats);
+    }
     return best.move;
   }
 
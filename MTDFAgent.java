@@ -1,18 +1,25 @@
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Random;
-import java.util.Date;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * MTD-f search implementation for Mancala
  * Based on pseudocode from: people.csail.mit.edu/plaat/mtdf.html
  *
+ * Optionally runs a Lazy SMP search: helper threads search the same root
+ * with staggered depths and rotated move orders, sharing results only
+ * through the transposition table. The main thread's move is always played.
+ *
  * CITS3001 Lab6
  *
  * Jesse Wyatt (20756971)
  */
-public class MTDFAgent implements MancalaAgent {
+public class MTDFAgent implements MancalaAgent, InstrumentedAgent {
 
   /**
    * Inner class to hold move / score pairs
@@ -27,106 +34,79 @@ public class MTDFAgent implements MancalaAgent {
     }
   }
 
-  /**
-   * Inner class to hold move / child-state pairs
-   */
-  static class ChildMove {
-    public int move;
-    public int[] state;
-
-    public ChildMove(int move, int[] state) {
-      this.move = move;
-      this.state = state;
-    }
-  }
-
-  /**
-   * Inner class to hold transposition table entries
-   */
-  static class TransEntry {
-    public int depth;
-    public int upperbound;
-    public int lowerbound;
-
-    public TransEntry() {
-      this.depth = 0;
-      this.upperbound = 200;
-      this.lowerbound = -200;
-    }
-  }
-
   static enum Ply {MAX, MIN}
 
   private static int N_SEEDS = 3 * 12;
   private static int MAX_SEARCH_DEPTH = 100;
-  private static long MAX_RUN_TIME = 100; //maximum runtime in milliseconds
-  private HashMap<Long, TransEntry> transTable;
-  private long[][] zobristTable;
-  private long searchCutoff;
+  private static long MAX_RUN_TIME = 100; //time budget per move in milliseconds
+  private static int TT_MEGABYTES = 16; //default transposition table size
+  private static int QUIESCENCE_NODES = 16; //default quiescence nodes per leaf
+  private static int QUIESCENCE_PLIES = 32; //board space reserved for quiescence lines
+  private static int MAX_PLY = MAX_SEARCH_DEPTH + N_SEEDS + QUIESCENCE_PLIES;
+  private TransTable transTable;
+  private boolean enhancedCutoffs;
+  private boolean clearOnReset; //otherwise the table carries over between games
+  private int quiescenceNodes = QUIESCENCE_NODES;
+  private final TimeManager clock = new TimeManager(); //polled by the main searcher only
+  private Searcher mainSearcher;
+  private Searcher[] helpers;
+  private ExecutorService helperPool;
+  private volatile boolean stopHelpers;
+  long nodes; //nodes visited by the main searcher in the last search
+  long qnodes; //quiescence nodes visited by the main searcher in the last search
+  private SearchListener listener;
+  private final SearchStats searchStats = new SearchStats();
+  private EndgameTable endgame = Endgame.shared(); //null without a tablebase
 
   /**
-   * Constructs an instance of the AI agent for gameplay.
-   * 
-   * Initialises the bitstring table for Zobrist hashing
-   * and a hashtable to map transpositions. 
+   * Constructs an instance of the AI agent for gameplay
+   * with the default transposition table size.
    */
   public MTDFAgent() {
-    //init zobrist table
-    Random prng = new Random();
-    zobristTable = new long[14][N_SEEDS + 1];
-    for (int i = 0; i < 14; ++i) {
-      for (int j = 0; j < N_SEEDS + 1; ++j) {
-        zobristTable[i][j] = prng.nextLong();
-      }
-    }
-
-    //init transposition table
-    transTable = new HashMap<Long, TransEntry>();
+    this(TT_MEGABYTES);
   }
 
   /**
-   * Checks to see if the move timer is nearly up.
-   * Uses java.util.Date to avoid overzealous filtering of "Syst*m" calls.
+   * Constructs an instance of the AI agent for gameplay.
    * 
-   * @return true if time is up, otherwise false
+   * Initialises a fixed-size table to map transpositions
+   * and the search board, which maintains Zobrist hashes.
+   *
+   * @param ttMegabytes the transposition table size in MiB
    */
-  private boolean timeUp() {
-    return(new Date().getTime() > searchCutoff);
+  public MTDFAgent(int ttMegabytes) {
+    this(ttMegabytes, 1);
   }
 
   /**
-   * Calcuates a Zobrist hash of a game state.
+   * Constructs an instance of the AI agent for gameplay.
    * 
-   * @param state the game state
-   * @return the Zobrist hash of the state
+   * Initialises a fixed-size table to map transpositions, shared by
+   * all search threads, and one searcher (with its own search board,
+   * which maintains Zobrist hashes) per thread.
+   *
+   * @param ttMegabytes the transposition table size in MiB
+   * @param threads the number of search threads, 1 for a serial search
    */
-  private long zobristHash(int[] state) {
-    long key = 0;
-    for (int i = 0; i < 14; ++i) {
-      key ^= zobristTable[i][state[i]];
-    }
-    return key;
-  }
+  public MTDFAgent(int ttMegabytes, int threads) {
+    //init transposition table
+    transTable = TransTable.create(ttMegabytes);
 
-  /**
-   * Checks if a game state is a terminal state.
-   * 
-   * @param state the game state
-   * @return true is state is terminal, false otherwise
-   */
-  private boolean terminal(int[] state) {
-    //if south empty then state is terminal
-    int count = 0;
-    for (int i = 0; i < 6; ++i) count += state[i];
-    if (count == 0) return true;
-
-    //if north empty then state is terminal
-    count = 0;
-    for (int i = 7; i < 13; ++i) count += state[i];
-    if (count == 0) return true;
-
-    //else state not terminal
-    return false;
+    //init searchers
+    mainSearcher = new Searcher(0);
+    helpers = new Searcher[Math.max(0, threads - 1)];
+    for (int i = 0; i < helpers.length; ++i) {
+      helpers[i] = new Searcher(i + 1);
+    }
+    if (helpers.length > 0) {
+      helperPool = Executors.newFixedThreadPool(helpers.length, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "MTDF helper");
+          t.setDaemon(true); //never keep the game alive
+          return t;
+        }
+      });
+    }
   }
 
   /**
@@ -135,13 +115,13 @@ public class MTDFAgent implements MancalaAgent {
    * @param state the game state
    * @return the estimated value of the state
    */
-  private int evaluate(int[] state) {
+  int evaluate(SearchBoard state) {
     int score = 0;
 
     //check endgame conditions
-    if (terminal(state)) {
-      for (int i = 0; i < 7; ++i) score += state[i];
-      for (int i = 7; i < 14; ++i) score -= state[i];
+    if (state.terminal()) {
+      for (int i = 0; i < 7; ++i) score += state.pit(i);
+      for (int i = 7; i < 14; ++i) score -= state.pit(i);
 
       if (score > 0) {
         return 100; //victory
@@ -154,252 +134,441 @@ public class MTDFAgent implements MancalaAgent {
 
     //calculate board value
     for (int i = 0; i < 6; ++i) {
-      if ((state[i] == 0) && (state[12-i] > 0)) { //empty house rule
-        score += state[12-i]; //potential empty house captures are worth half
+      if ((state.pit(i) == 0) && (state.pit(12-i) > 0)) { //empty house rule
+        score += state.pit(12-i); //potential empty house captures are worth half
       } else {
-        score += state[i]; //house seeds have standard value
+        score += state.pit(i); //house seeds have standard value
       }
     }
-    score += 2*state[6]; //siloed seeds are double
+    score += 2*state.pit(6); //siloed seeds are double
 
     for (int i = 7; i < 13; ++i) {
-      if ((state[i] == 0) && (state[12-i] > 0)) {
-        score -= state[12-i];
+      if ((state.pit(i) == 0) && (state.pit(12-i) > 0)) {
+        score -= state.pit(12-i);
       } else {
-        score -= state[i];
+        score -= state.pit(i);
       }
     }
-    score -= 2*state[13];
+    score -= 2*state.pit(13);
 
     return score;
   }
 
   /**
-   * Checks move to see if valid, and if the corresponding state
-   * is contained in the transposition table.
+   * Checks if a node may be cut off by the transposition table.
+   * The root never is, as it must produce a move.
    *
-   * @param move the game move to be checked
-   * @param hash the Zobrist hash of the equivalent move state
-   * @return true if move valid and state contained in transposition table
+   * @param ply the number of moves made from the root
+   * @return true if the node is not the root
    */
-  private boolean validEntry(ChildMove move, long hash) {
-    if (move.move < 0) {
-      return false;
-    } else {
-      return transTable.containsKey(hash);
-    }
+  private boolean validEntry(int ply) {
+    return ply > 0;
   }
 
   /**
-   * Performs MTD-f search by calling many zero-width alpha-beta
-   * searches.
-   *
-   * @param state the root state to search from
-   * @param guess the first best guess of minimax value
-   * @param depth the maximum search depth
-   * @return the move corresponding to the true minimax value
+   * Inner class holding the per-thread search state. Every searcher has its
+   * own search board but all share the agent's transposition table.
    */
-  private MoveScore MTDF(ChildMove state, int guess, int depth) {
-    int value, upperbound, lowerbound, beta;
-    MoveScore move = new MoveScore(-1, -1); //placeholder
-
-    value = guess;
-    upperbound = Integer.MAX_VALUE;
-    lowerbound = Integer.MIN_VALUE;
-    while (lowerbound < upperbound) {
-      beta = Math.max(value, lowerbound + 1);
-      move = alphaBetaWithMemory(state, beta - 1, beta, depth, Ply.MAX);
-      value = move.score;
-      if (value < beta) {
-        upperbound = value;
-      } else {
-        lowerbound = value;
-      }
+  class Searcher implements Runnable {
+    private final int id; //0 for the main thread
+    private final SearchBoard searchBoard;
+    private final MoveOrdering ordering;
+    private int rootMove;
+    private long nodes;
+    private long qnodes;
+    private int quiescenceLeft; //nodes the current leaf's quiescence search may still visit
+    private SearchStats stats; //only ever set for the main searcher
+
+    Searcher(int id) {
+      this.id = id;
+      //extra turns are made without reducing depth
+      this.searchBoard = new SearchBoard(MAX_PLY + 1);
+      this.ordering = new MoveOrdering(MAX_PLY + 1);
     }
-    return move;
-  }
 
-  /**
-   * Performs Minimax search using alpha-beta pruning with 
-   * transposition tables.
-   *
-   * @param move the game state to search from
-   * @param alpha the maximised lowerbound
-   * @param beta the minimised upperbound
-   * @param depth the maximum search depth
-   * @param step the current minimax step
-   * @return the move corresponding to the minimax value
-   */
-  private MoveScore alphaBetaWithMemory(ChildMove move, int alpha, int beta, int depth, Ply step) {    
-    int a, b, value, bestMove = 0;
-    MoveScore searchResult;
-    TransEntry trans;
-    long hash = zobristHash(move.state);
-
-    //base case
-    if ((depth == 0) || terminal(move.state)) {
-      return new MoveScore(move.move, evaluate(move.state));
+    /**
+     * Checks if the searcher should stop searching.
+     *
+     * @return true if this is a helper and the main search has finished,
+     * or this is the main searcher and its time is up
+     */
+    private boolean aborted() {
+      return (id > 0) ? stopHelpers : clock.aborted();
     }
 
-    //trans table lookup
-    if (validEntry(move, hash)) {
-      trans = transTable.get(hash);
-      if (trans.depth >= depth) {
-        if (trans.lowerbound >= beta) {
-          return new MoveScore(move.move, trans.lowerbound);
-        }
-        if (trans.upperbound <= alpha) {
-          return new MoveScore(move.move, trans.upperbound);
-        }
-        alpha = Math.max(alpha, trans.lowerbound);
-        beta = Math.min(beta, trans.upperbound);
+    /**
+     * Helper thread iterative deepening, staggered so that half the helpers
+     * run one ply ahead of the main thread. Runs until stopped.
+     */
+    public void run() {
+      int depth = 1 + (id % 2);
+      int guess = 0;
+      while ((depth < MAX_SEARCH_DEPTH) && !stopHelpers) {
+        guess = MTDF(guess, depth).score;
+        ++depth;
       }
     }
 
-    //recursive
-    if (step == Ply.MAX) { //max step
-      value = Integer.MIN_VALUE;
-      a = alpha; //save original alpha
-      for (ChildMove child : children(move, Ply.MAX, false)) {
-        searchResult = alphaBetaWithMemory(child, a, beta, depth - 1, Ply.MIN);
-        if (searchResult.score >= value) {
-          value = searchResult.score;
-          bestMove = child.move;
-        }
-        a = Math.max(a, value);
-        if (alpha >= beta) break; //prune
-      }
-    } else { //min step
-      value = Integer.MAX_VALUE;
-      b = beta; //save original beta
-      for (ChildMove child : children(move, Ply.MIN, false)) {
-        searchResult = alphaBetaWithMemory(child, alpha, b, depth - 1, Ply.MAX);
-        if (searchResult.score <= value) {
-          value = searchResult.score;
-          bestMove = child.move;
+    /**
+     * Performs MTD-f search by calling many zero-width alpha-beta
+     * searches from the position on the search board.
+     *
+     * @param guess the first best guess of minimax value
+     * @param depth the maximum search depth
+     * @return the move corresponding to the true minimax value,
+     * meaningless if the search was aborted
+     */
+    MoveScore MTDF(int guess, int depth) {
+      int value, upperbound, lowerbound, beta;
+      int move = -1;
+
+      value = guess;
+      upperbound = Integer.MAX_VALUE;
+      lowerbound = Integer.MIN_VALUE;
+      while ((lowerbound < upperbound) && !aborted()) {
+        beta = Math.max(value, lowerbound + 1);
+        value = alphaBetaWithMemory(beta - 1, beta, depth, Ply.MAX, 0);
+        if (stats != null) ++stats.passes;
+        if (value < beta) {
+          upperbound = value; //every root move failed low, so rootMove is just the last to tie
+        } else {
+          lowerbound = value;
+          move = rootMove; //proven to reach the new lower bound
         }
-        b = Math.min(b, value);
-        if (alpha >= beta) break; //prune
       }
+      if (move < 0) move = tableMove(); //no pass failed high
+      return new MoveScore(move, value);
+    }
+
+    /**
+     * @return the transposition table's best move at the root if it is
+     * legal there, otherwise the last pass's root move
+     */
+    private int tableMove() {
+      long data = transTable.probe(searchBoard.hash());
+      int house = (data != 0) ? TransTable.move(data) : TransTable.NO_MOVE;
+      return ((house < 6) && (searchBoard.pit(house) > 0)) ? house : rootMove;
     }
 
-    //store trans table values
-    if (transTable.containsKey(hash)) { //no getOrDefault in Java 1.5
-      trans = transTable.get(hash);
-    } else {
-      trans = new TransEntry();
+    /**
+     * @param i the number of moves already searched at a node
+     * @param n the number of moves at the node
+     * @return the index of the next move to search, in this searcher's order
+     */
+    private int helperOrder(int i, int n) {
+      return ((i == 0) || (id == 0)) ? i : 1 + (i - 1 + id) % (n - 1);
     }
 
-    if (trans.depth <= depth) {
-      //fail low implies an upper bound
-      if (value <= alpha) {
-        trans.upperbound = value;
+    /**
+     * Performs Minimax search using alpha-beta pruning with 
+     * transposition tables. Moves are made and unmade on the search board,
+     * and an extra turn is searched at the same depth by the same player.
+     * The best move at the root is left in rootMove. Moves are ordered by
+     * the searcher's MoveOrdering, and helpers rotate the moves after the
+     * first so that threads spread over different subtrees while still
+     * searching the table's best move first.
+     *
+     * @param alpha the maximised lowerbound
+     * @param beta the minimised upperbound
+     * @param depth the maximum search depth
+     * @param step the current minimax step
+     * @param ply the number of moves made from the root
+     * @return the minimax value
+     */
+    private int alphaBetaWithMemory(int alpha, int beta, int depth, Ply step, int ply) {
+      int a, b, value, score, house, n, lowerbound, upperbound, bestMove = -1;
+      int[] moves;
+      long data;
+      boolean collided;
+      long hash = searchBoard.hash(); //maintained incrementally by make/unmake
+      ++nodes;
+
+      //helpers abandon the search once the main thread is done, the main thread once time is up
+      if ((id > 0) ? stopHelpers : clock.poll()) return 0;
+
+      //base case, a leaf with a capture or extra turn pending is searched on
+      if (searchBoard.terminal()) {
+        return evaluate(searchBoard);
       }
-      //fail high implies a lower bound
-      else if (value >= beta) {
-        trans.lowerbound = value;
+      if (depth == 0) {
+        if (quiescenceNodes <= 0) return evaluate(searchBoard);
+        quiescenceLeft = quiescenceNodes;
+        return quiesce(alpha, beta, step, ply);
       }
-      //accurate minimax value
-      else {
-        trans.lowerbound = value;
-        trans.upperbound = value;
+
+      //few enough seeds left to look up the exact outcome
+      if ((ply > 0) && (endgame != null) && endgame.covers(searchBoard)) {
+        return Integer.signum(endgame.finalDifference(searchBoard)) * 100;
       }
-      trans.depth = depth;
-      transTable.put(hash, trans);
-    }
 
-    return new MoveScore(bestMove, value);
-  }
+      //trans table lookup (the root only takes the best move)
+      data = transTable.probe(hash);
+      if ((stats != null) && validEntry(ply)) stats.probe(data);
+      if (validEntry(ply) && (data != 0) && (TransTable.depth(data) >= depth)) {
+        if ((TransTable.lower(data) >= beta) || (TransTable.lower(data) == TransTable.upper(data))) {
+          return TransTable.lower(data); //fail high or exact value
+        }
+        if (TransTable.upper(data) <= alpha) {
+          return TransTable.upper(data);
+        }
+        alpha = Math.max(alpha, TransTable.lower(data));
+        beta = Math.min(beta, TransTable.upper(data));
+      }
 
-  /**
-   * Generates all valid child states of a move.
-   *
-   * @param parent the parent state
-   * @param step the current minimax step (the player to generate moves)
-   * @param extraTurn true if recursively calculating children for
-   * an extra turn, false otherwise
-   * @return a list of all valid child moves
-   */
-  private ArrayList<ChildMove> children(ChildMove parent, Ply step, boolean extraTurn) {
-    ArrayList<ChildMove> childmoves = new ArrayList<ChildMove>();
-    ChildMove child;
-
-    if (step == Ply.MAX) { //our moves
-      for (int i = 0; i < 6; ++i) {
-        if (parent.state[i] > 0) {
-          //move is valid
-          if (extraTurn) { // if extra turn, treat as same move as parent
-            child = new ChildMove(parent.move, Arrays.copyOf(parent.state, 14));
+      //recursive
+      n = searchBoard.generate(ply, step == Ply.MAX);
+      moves = searchBoard.moves(ply);
+
+      //enhanced transposition cutoff, a child's stored bound may already refute the window
+      if (enhancedCutoffs && validEntry(ply) && (depth >= TransTable.ETC_MIN_DEPTH)) {
+        score = transTable.transpositionCutoff(searchBoard, moves, n, depth, step == Ply.MAX, alpha, beta);
+        if (stats != null) stats.transpositionCutoff(n, score != TransTable.NO_CUTOFF);
+        if (score != TransTable.NO_CUTOFF) return score;
+      }
+      ordering.order(searchBoard, ply, n, (data != 0) ? TransTable.move(data) : TransTable.NO_MOVE);
+      if (step == Ply.MAX) { //max step
+        value = Integer.MIN_VALUE;
+        a = alpha; //save original alpha
+        for (int i = 0; i < n; ++i) {
+          house = moves[helperOrder(i, n)];
+          if (searchBoard.make(house)) {
+            score = alphaBetaWithMemory(a, beta, depth, Ply.MAX, ply + 1);
           } else {
-            child = new ChildMove(i, Arrays.copyOf(parent.state, 14));
+            score = alphaBetaWithMemory(a, beta, depth - 1, Ply.MIN, ply + 1);
           }
-          //sow seeds from i
-          int j = i;
-          int seeds = parent.state[i];
-          child.state[i] = 0;
-          while(seeds > 0) {
-            ++j;
-            j %= 14;
-            if (j != 13) { //don't place in opponent store
-              --seeds;
-              child.state[j] += 1;
-            }
+          searchBoard.unmake();
+          if (aborted()) return 0; //partial results must not reach the table
+          if (score > value) { //a later move failing low at a ties only as a bound
+            value = score;
+            bestMove = house;
           }
-          if (j == 6) { //extra turn
-            if (terminal(child.state)) { //if move ends the game it can't give an extra turn
-              childmoves.add(child);
-            } else { //recursively find extra move children of this state
-              childmoves.addAll(children(child, step, true));
-            }
-          } else {
-            if ((j >= 0) && (j <= 5) && (child.state[j] == 1) && (child.state[12-j] > 0)) { //empty house rule
-              child.state[6] = child.state[6] + child.state[12-j] + 1;
-              child.state[j] = 0;
-              child.state[12-j] = 0;
-            }
-            childmoves.add(child);
+          a = Math.max(a, value);
+          if (a >= beta) { //prune
+            ordering.cutoff(house, ply, depth);
+            if (stats != null) stats.cutoff(i);
+            break;
           }
         }
-      }
-    } else { //enemy moves
-      for (int i = 7; i < 13; ++i) {
-        if (parent.state[i] > 0) {
-          //move is valid
-          if (extraTurn) {
-            child = new ChildMove(parent.move, Arrays.copyOf(parent.state, 14));
+      } else { //min step
+        value = Integer.MAX_VALUE;
+        b = beta; //save original beta
+        for (int i = 0; i < n; ++i) {
+          house = moves[helperOrder(i, n)];
+          if (searchBoard.make(house)) {
+            score = alphaBetaWithMemory(alpha, b, depth, Ply.MIN, ply + 1);
           } else {
-            child = new ChildMove(i, Arrays.copyOf(parent.state, 14));
+            score = alphaBetaWithMemory(alpha, b, depth - 1, Ply.MAX, ply + 1);
           }
-          //sow seeds from i
-          int j = i;
-          int seeds = parent.state[i];
-          child.state[i] = 0;
-          while(seeds > 0) {
-            ++j;
-            j %= 14;
-            if (j != 6) { //don't place in our store
-              --seeds;
-              child.state[j] += 1;
-            }
+          searchBoard.unmake();
+          if (aborted()) return 0; //partial results must not reach the table
+          if (score < value) {
+            value = score;
+            bestMove = house;
           }
-          if (j == 13) { //extra turn
-            if (terminal(child.state)) { //if move ends the game it can't give an extra turn
-              childmoves.add(child);
-            } else { //recursively find extra move children of this state
-              childmoves.addAll(children(child, step, true));
-            }
-          } else {
-            if ((j >= 7) && (j <= 12) && (child.state[j] == 1) && (child.state[12-j] > 0)) { //empty house rule
-              child.state[13] = child.state[13] + child.state[12-j] + 1;
-              child.state[j] = 0;
-              child.state[12-j] = 0;
-            }
-            childmoves.add(child);
+          b = Math.min(b, value);
+          if (alpha >= b) { //prune
+            ordering.cutoff(house, ply, depth);
+            if (stats != null) stats.cutoff(i);
+            break;
           }
         }
       }
+      if (ply == 0) rootMove = bestMove;
+
+      //store trans table values, bounds from a shallower search are discarded
+      data = transTable.probe(hash);
+      if ((data == 0) || (TransTable.depth(data) <= depth)) {
+        if ((data != 0) && (TransTable.depth(data) == depth)) {
+          lowerbound = TransTable.lower(data);
+          upperbound = TransTable.upper(data);
+        } else {
+          lowerbound = TransTable.MIN_SCORE;
+          upperbound = TransTable.MAX_SCORE;
+        }
+        //fail low implies an upper bound
+        if (value <= alpha) {
+          upperbound = value;
+        }
+        //fail high implies a lower bound
+        else if (value >= beta) {
+          lowerbound = value;
+        }
+        //accurate minimax value
+        else {
+          lowerbound = value;
+          upperbound = value;
+        }
+        collided = transTable.store(hash, depth, lowerbound, upperbound, bestMove);
+        if (stats != null) stats.store(collided);
+      }
+
+      return value;
+    }
+    /**
+     * Quiescence search: below a leaf of the main search only moves that
+     * earn an extra turn or capture are searched, so positions aren't
+     * evaluated in the middle of an exchange. The side to move may instead
+     * stand pat on the static evaluation. Each leaf may visit
+     * quiescenceNodes nodes, after which the positions left are evaluated
+     * as they stand. Results are not stored.
+     *
+     * @param alpha the maximised lowerbound
+     * @param beta the minimised upperbound
+     * @param step the current minimax step
+     * @param ply the number of moves made from the root
+     * @return the value of the position once quiet
+     */
+    private int quiesce(int alpha, int beta, Ply step, int ply) {
+      int value, score, house, n, noisy, store;
+      int[] moves;
+      boolean extraTurn;
+      ++qnodes;
+
+      if ((id > 0) ? stopHelpers : clock.poll()) return 0;
+
+      //stand pat
+      value = evaluate(searchBoard);
+      if (searchBoard.terminal() || (--quiescenceLeft <= 0) || (ply >= MAX_PLY)) return value;
+      if ((step == Ply.MAX) ? (value >= beta) : (value <= alpha)) return value;
+
+      //only captures and extra turns
+      n = searchBoard.generate(ply, step == Ply.MAX);
+      moves = searchBoard.moves(ply);
+      store = (step == Ply.MAX) ? Position.SOUTH_STORE : Position.NORTH_STORE;
+      noisy = 0;
+      for (int i = 0; i < n; ++i) {
+        house = moves[i];
+        if ((searchBoard.landing(house) == store) || (searchBoard.captured(house) > 0)) moves[noisy++] = house;
+      }
+      ordering.order(searchBoard, ply, noisy, TransTable.NO_MOVE);
+      for (int i = 0; i < noisy; ++i) {
+        house = moves[i];
+        extraTurn = searchBoard.make(house);
+        if (step == Ply.MAX) {
+          score = quiesce(Math.max(alpha, value), beta, extraTurn ? Ply.MAX : Ply.MIN, ply + 1);
+        } else {
+          score = quiesce(alpha, Math.min(beta, value), extraTurn ? Ply.MIN : Ply.MAX, ply + 1);
+        }
+        searchBoard.unmake();
+        if (aborted()) return 0;
+        value = (step == Ply.MAX) ? Math.max(value, score) : Math.min(value, score);
+        if ((step == Ply.MAX) ? (value >= beta) : (value <= alpha)) break;
+      }
+      return value;
+    }
+  }
+
+  /**
+   * Runs the main searcher's iterative deepening to a fixed depth,
+   * ignoring the clock and without helpers, from an empty transposition
+   * table, for benchmarking.
+   *
+   * @param board the position to search, as passed to move()
+   * @param depth the final search depth
+   * @return the house chosen
+   */
+  int search(int[] board, int depth) {
+    int guess = 0;
+    MoveScore best = null;
+    transTable.clear();
+    mainSearcher.ordering.clear();
+    clock.stop();
+    mainSearcher.searchBoard.set(Position.of(board));
+    mainSearcher.nodes = 0;
+    mainSearcher.qnodes = 0;
+    for (int d = 1; d <= Math.min(depth, MAX_SEARCH_DEPTH); ++d) {
+      best = mainSearcher.MTDF(guess, d);
+      mainSearcher.ordering.recordPrincipalVariation(mainSearcher.searchBoard, transTable);
+      if (d > 1) guess = best.score; //as move(), which doesn't keep the depth 1 guess
     }
-    return childmoves;
+    nodes = mainSearcher.nodes;
+    qnodes = mainSearcher.qnodes;
+    return best.move;
+  }
+
+  /**
+   * Sets the quiescence search's budget.
+   *
+   * @param nodes the nodes each leaf of the main search may spend
+   * searching captures and extra turns, 0 to evaluate leaves directly
+   */
+  public void setQuiescence(int nodes) {
+    this.quiescenceNodes = Math.max(0, nodes);
+  }
+
+  /**
+   * Sets the endgame tablebase consulted once few enough seeds are left in
+   * the houses. Agents start with Endgame.shared().
+   *
+   * @param endgame the tablebase, or null to search to the end
+   */
+  public void setEndgame(EndgameTable endgame) {
+    this.endgame = endgame;
+  }
+
+  /**
+   * Enables enhanced transposition cutoffs in every searcher (see
+   * TransTable.transpositionCutoff()), off by default.
+   *
+   * @param enhancedCutoffs true to enable them
+   */
+  public void setEnhancedCutoffs(boolean enhancedCutoffs) {
+    this.enhancedCutoffs = enhancedCutoffs;
+  }
+
+  /**
+   * Chooses whether reset() empties the transposition table. By default
+   * entries carry over to the next game, where they are used until newer
+   * results replace them.
+   *
+   * @param clearOnReset true to start every game from an empty table
+   */
+  public void setClearOnReset(boolean clearOnReset) {
+    this.clearOnReset = clearOnReset;
+  }
+
+  /**
+   * Saves the transposition table, so that it can be shipped with the
+   * agent and loaded through loadTransTable() or -Dmancala.tt.
+   * Must not be called during a move.
+   *
+   * @param file the file to write
+   * @throws IOException if the file can't be written
+   */
+  public void saveTransTable(File file) throws IOException {
+    transTable.save(file);
+  }
+
+  /**
+   * Replaces the transposition table with one saved by saveTransTable().
+   * Must not be called during a move.
+   *
+   * @param file the file to read
+   * @throws IOException if the file can't be read or isn't a transposition table
+   */
+  public void loadTransTable(File file) throws IOException {
+    transTable = TransTable.load(file);
+  }
+
+  /**
+   * The principal variation of the last move's search, recovered from the
+   * transposition table's best moves. Houses are numbered as on the board
+   * passed to move(), so the opponent's replies are 7-12.
+   *
+   * @return the line the agent expects, starting with the move it played
+   */
+  public int[] principalVariation() {
+    return mainSearcher.ordering.principalVariation();
+  }
+
+  /**
+   * Attaches a listener to be sent search statistics after every move.
+   * Only the main searcher's work is counted.
+   *
+   * @param listener the listener, or null to stop collecting statistics
+   */
+  public void setSearchListener(SearchListener listener) {
+    this.listener = listener;
   }
 
   /**
@@ -419,17 +588,59 @@ public class MTDFAgent implements MancalaAgent {
     int depth = 1;
     int guess = 0;
     MoveScore best;
-    ChildMove state;
-    
-    // The search must be initialised with an invalid "parent" move to avoid premature trans table association
-    state = new ChildMove(-10, board);
-
-    this.searchCutoff = new Date().getTime() + MAX_RUN_TIME;
-    best = MTDF(state, guess, depth);
-    while ((depth < MAX_SEARCH_DEPTH) && (!timeUp())) {
+    Position root = Position.of(board);
+    ArrayList<Future<?>> running = new ArrayList<Future<?>>();
+
+    transTable.newSearch(); //before any helper starts storing
+    mainSearcher.searchBoard.set(root);
+    mainSearcher.ordering.newSearch();
+    mainSearcher.nodes = 0;
+    mainSearcher.qnodes = 0;
+    SearchStats stats = mainSearcher.stats = (listener != null) ? searchStats : null;
+    if (stats != null) stats.reset();
+    stopHelpers = false;
+    for (Searcher helper : helpers) {
+      helper.searchBoard.set(root);
+      helper.ordering.newSearch();
+      running.add(helperPool.submit(helper));
+    }
+
+    //the first iteration always completes, later ones are abandoned when time is up
+    clock.start(MAX_RUN_TIME * 1000000);
+    best = mainSearcher.MTDF(guess, depth);
+    mainSearcher.ordering.recordPrincipalVariation(mainSearcher.searchBoard, transTable);
+    clock.iterationDone();
+    if (stats != null) stats.iteration(depth);
+    while ((depth < MAX_SEARCH_DEPTH) && clock.startIteration()) {
+      MoveScore result = mainSearcher.MTDF(guess, depth + 1); //every pass searches the previous PV first
+      if (clock.aborted()) break; //keep the last completed iteration's move
       ++depth;
-      best = MTDF(state, guess, depth);
+      best = result;
+      mainSearcher.ordering.recordPrincipalVariation(mainSearcher.searchBoard, transTable);
+      clock.iterationDone();
       guess = best.score;
+      if (stats != null) stats.iteration(depth);
+    }
+
+    //wait for helpers to unwind so their boards can be reused
+    stopHelpers = true;
+    nodes = mainSearcher.nodes;
+    qnodes = mainSearcher.qnodes;
+    for (Future<?> helper : running) {
+      try {
+        helper.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+    if (stats != null) {
+      stats.nodes = nodes;
+      stats.qnodes = qnodes;
+      stats.pvLength = mainSearcher.ordering.principalVariation(stats.pv);
+      mainSearcher.stats = null;
+      listener.searchFinished(name(), stats);
     }
 
     return best.move;
@@ -447,7 +658,7 @@ public class MTDFAgent implements MancalaAgent {
    * A method to reset the agent for a new game.
    */
   public void reset() {
-    //nuffin goes ere
+    if (clearOnReset) transTable.clear();
   }
 }
 
@@ -0,0 +1,193 @@
+import java.io.StringWriter;
+
+/**
+ * A single game of Mancala between two agents.
+ *
+ * Instance-based version of the rules in Mancala.play(), so that many games
+ * can run concurrently in one JVM. Board layout, move order, forfeits and the
+ * report format are the same as the static harness: agent 1 owns houses 0-5
+ * and store 6, agent 2 owns houses 7-12 and store 13 and is shown the board
+ * inverted.
+ */
+public class MancalaGame {
+
+  private final int[] board = new int[14];
+  private final MancalaAgent agent1;
+  private final MancalaAgent agent2;
+  private boolean onesTurn;
+
+  /**
+   * Sets up a game in which agent 2 moves first, as in Mancala.play().
+   *
+   * @param agent1 the agent owning houses 0-5
+   * @param agent2 the agent owning houses 7-12
+   */
+  public MancalaGame(MancalaAgent agent1, MancalaAgent agent2) {
+    this(agent1, agent2, false);
+  }
+
+  /**
+   * Sets up a game.
+   *
+   * @param agent1 the agent owning houses 0-5
+   * @param agent2 the agent owning houses 7-12
+   * @param onesTurn true if agent 1 moves first
+   */
+  public MancalaGame(MancalaAgent agent1, MancalaAgent agent2, boolean onesTurn) {
+    this.agent1 = agent1;
+    this.agent2 = agent2;
+    this.onesTurn = onesTurn;
+  }
+
+  /**
+   * Plays the game to the end, resetting both agents first.
+   * If at any stage a player attempts an illegal move they forfeit the game.
+   *
+   * @param report a writer to record the moves of the game
+   * @return the difference in score (agent 1's score - agent 2's score)
+   */
+  public int play(StringWriter report) {
+    return play(new TextGameSink(report));
+  }
+
+  /**
+   * Plays the game to the end, resetting both agents first and
+   * reporting each move to a sink as it is played.
+   * If at any stage a player attempts an illegal move they forfeit the game.
+   *
+   * @param sink the receiver of the game's events
+   * @return the difference in score (agent 1's score - agent 2's score)
+   */
+  public int play(GameSink sink) {
+    sink.start(agent1.name(), agent2.name());
+    agent1.reset();
+    agent2.reset();
+    for (int i = 0; i < 14; ++i) board[i] = 0;
+    for (int i = 0; i < 6; ++i) board[i] = 3;
+    for (int i = 7; i < 13; ++i) board[i] = 3;
+
+    while (!gameOver()) {
+      if (onesTurn) {
+        int mv = agent1.move(board.clone());
+        sink.move(1, mv);
+        if ((mv < 0) || (mv > 5) || (board[mv] == 0)) {
+          forfeit(1);
+          sink.forfeit(1);
+        } else {
+          int i = mv;
+          while (board[mv] > 0) {
+            i = (i == 12) ? 0 : i + 1;
+            board[i]++;
+            board[mv]--;
+          }
+          if ((i < 6) && (board[i] == 1) && (board[12-i] > 0)) {
+            board[6] += board[12-i] + board[i];
+            board[12-i] = 0;
+            board[i] = 0;
+          }
+          if (i != 6) onesTurn = false;
+        }
+      } else {
+        int mv = 7 + agent2.move(invertBoard());
+        sink.move(2, mv);
+        if ((mv < 7) || (mv > 12) || (board[mv] == 0)) {
+          forfeit(2);
+          sink.forfeit(2);
+        } else {
+          int i = mv;
+          while (board[mv] > 0) {
+            i = (i == 5) ? 7 : (i == 13) ? 0 : i + 1;
+            board[i]++;
+            board[mv]--;
+          }
+          if ((i < 13) && (i > 6) && (board[i] == 1) && (board[12-i] > 0)) {
+            board[13] += board[12-i] + board[i];
+            board[12-i] = 0;
+            board[i] = 0;
+          }
+          if (i != 13) onesTurn = true;
+        }
+      }
+      sink.board(board);
+    }
+
+    sink.result(board[6], board[13]);
+    return board[6] - board[13];
+  }
+
+  /**
+   * @return true if agent 1 is (or, after the game, would have been) to move
+   */
+  public boolean onesTurn() {
+    return onesTurn;
+  }
+
+  /**
+   * Produces a string representation of the game in the form:
+   *            Agent2
+   *    12  11  10  9   8   7
+   *13                          6
+   *    0   1   2   3   4   5
+   *            Agent1
+   *
+   * @return the board drawing
+   */
+  public String boardString() {
+    StringBuffer sb = new StringBuffer();
+    sb.append("\t\t\t" + agent2.name() + "\n");
+    for (int i = 12; i > 6; --i) sb.append("\t" + board[i]);
+    sb.append("\n" + board[13] + "\t\t\t\t\t\t\t" + board[6] + "\n");
+    for (int i = 0; i < 6; ++i) sb.append("\t" + board[i]);
+    sb.append("\n\t\t\t" + agent1.name() + "\n");
+    return sb.toString();
+  }
+
+  //tests to see if the game is over, banking the remaining seeds if it is
+  private boolean gameOver() {
+    boolean go = true;
+    for (int i = 0; i < 6; ++i) go = go && (board[i] == 0);
+    if (go) {
+      for (int i = 7; i < 13; ++i) {
+        board[13] += board[i];
+        board[i] = 0;
+      }
+      return true;
+    }
+    go = true;
+    for (int i = 7; i < 13; ++i) go = go && (board[i] == 0);
+    if (go) {
+      for (int i = 0; i < 6; ++i) {
+        board[6] += board[i];
+        board[i] = 0;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  //moves all seeds to the opponent's store
+  private void forfeit(int agent) {
+    if (agent == 1) {
+      for (int i = 0; i < 13; ++i) {
+        board[13] += board[i];
+        board[i] = 0;
+      }
+    }
+    if (agent == 2) {
+      for (int i = 0; i < 14; i = (i == 5) ? 7 : i + 1) {
+        board[6] += board[i];
+        board[i] = 0;
+      }
+    }
+  }
+
+  //inverts the board so agent 2 sees it as if playing as agent 1
+  private int[] invertBoard() {
+    int[] bd = new int[14];
+    for (int i = 0; i < 7; ++i) {
+      bd[i] = board[7+i];
+      bd[7+i] = board[i];
+    }
+    return bd;
+  }
+}
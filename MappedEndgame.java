@@ -0,0 +1,179 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * Endgame tablebase served straight from a memory-mapped file.
+ *
+ * Nothing is copied into the heap, so a table far larger than a tournament
+ * JVM's heap can be used, and every JVM on the host shares one copy of it
+ * through the page cache. Reads are absolute gets on a read-only buffer,
+ * which are safe from any number of search threads.
+ *
+ * Two file formats are read:
+ *   - the one byte per position format written by Endgame.save()
+ *   - a packed format written by write() with 4 bits per position
+ *
+ * Packed values are stored as the seeds banked by the player to move less
+ * half of the seeds left, which is within -7..7 for over 99% of positions.
+ * The code 15 marks the rest, whose values are kept in a sorted table of
+ * exceptions after the packed values and found by binary search.
+ *
+ * Packed file layout (big-endian): int magic, int maxSeeds, int bits,
+ * long positions, int exceptions, then the packed values (position i in
+ * the low nibble of byte i / 2 when i is even), the exceptions' indices
+ * as ints and their values as bytes.
+ */
+public class MappedEndgame implements EndgameTable {
+
+  static final int MAGIC = 0x4B544250; //"KTBP"
+  private static final int HEADER_BYTES = 24;
+  private static final int BIAS = 7; //packed code of a value of exactly half the seeds
+  private static final int ESCAPE = 15;
+
+  private final MappedByteBuffer buffer;
+  private final int maxSeeds;
+  private final int bits;
+  private final int valuesStart;
+  private final int exceptions;
+  private final int indicesStart;
+  private final int exceptionValuesStart;
+
+  private MappedEndgame(MappedByteBuffer buffer, int maxSeeds, int bits, int valuesStart, long positions, int exceptions) {
+    this.buffer = buffer;
+    this.maxSeeds = maxSeeds;
+    this.bits = bits;
+    this.valuesStart = valuesStart;
+    this.exceptions = exceptions;
+    indicesStart = valuesStart + (int) ((positions * bits + 7) / 8);
+    exceptionValuesStart = indicesStart + 4 * exceptions;
+  }
+
+  /**
+   * Maps a tablebase file written by Endgame.save() or write().
+   *
+   * @param file the file to map
+   * @return the table
+   * @throws IOException if the file can't be mapped or isn't a tablebase
+   */
+  public static MappedEndgame open(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) throw new IOException(file + " is too large to map");
+      //the mapping stays valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      int magic = buffer.getInt(0);
+      int maxSeeds = buffer.getInt(4);
+      MappedEndgame table;
+      if (magic == Endgame.MAGIC) {
+        table = new MappedEndgame(buffer, maxSeeds, 8, Endgame.HEADER_BYTES, buffer.getLong(8), 0);
+      } else if (magic == MAGIC) {
+        table = new MappedEndgame(buffer, maxSeeds, buffer.getInt(8), HEADER_BYTES, buffer.getLong(12), buffer.getInt(20));
+      } else {
+        throw new IOException(file + " is not an endgame tablebase");
+      }
+      if (table.exceptionValuesStart + table.exceptions != channel.size()) {
+        throw new IOException(file + " has the wrong number of positions");
+      }
+      return table;
+    } finally {
+      raf.close();
+    }
+  }
+
+  public int maxSeeds() {
+    return maxSeeds;
+  }
+
+  public boolean covers(SearchBoard board) {
+    return PositionIndex.seeds(board) <= maxSeeds;
+  }
+
+  public int finalDifference(SearchBoard board) {
+    int seeds = PositionIndex.seeds(board);
+    int value = 2 * banked(PositionIndex.rank(board), seeds) - seeds; //to move's share less the opponent's
+    int stores = board.pit(Position.SOUTH_STORE) - board.pit(Position.NORTH_STORE);
+    return stores + (board.southToMove() ? value : -value);
+  }
+
+  //the seeds banked by the player to move from the position ranked index
+  private int banked(long index, int seeds) {
+    if (bits == 8) return buffer.get(valuesStart + (int) index);
+    int packed = buffer.get(valuesStart + (int) (index >>> 1));
+    int code = ((index & 1) == 0) ? (packed & 0xF) : ((packed >>> 4) & 0xF);
+    if (code != ESCAPE) return code - BIAS + seeds / 2;
+    return exception((int) index);
+  }
+
+  //binary search of the exception indices
+  private int exception(int index) {
+    int low = 0, high = exceptions - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int key = buffer.getInt(indicesStart + 4 * mid);
+      if (key < index) {
+        low = mid + 1;
+      } else if (key > index) {
+        high = mid - 1;
+      } else {
+        return buffer.get(exceptionValuesStart + mid);
+      }
+    }
+    throw new IllegalStateException("missing endgame exception " + index);
+  }
+
+  /**
+   * Writes a solved table in the packed format.
+   *
+   * @param table the solved table
+   * @param file the file to write
+   * @param bits bits per position, only 4 is supported
+   * @throws IOException if the file can't be written
+   */
+  public static void write(Endgame table, File file, int bits) throws IOException {
+    if (bits != 4) throw new IllegalArgumentException("unsupported packing: " + bits + " bits");
+    long positions = PositionIndex.count(table.maxSeeds());
+    if (positions > Integer.MAX_VALUE) throw new IllegalArgumentException("too many positions to map");
+    ByteBuffer packed = ByteBuffer.allocate((int) ((positions * bits + 7) / 8));
+    ArrayList<Integer> indices = new ArrayList<Integer>();
+    ArrayList<Byte> values = new ArrayList<Byte>();
+
+    //ranks run through each seed count in turn
+    long index = 0;
+    for (int s = 0; s <= table.maxSeeds(); ++s) {
+      for (long end = PositionIndex.count(s); index < end; ++index) {
+        int banked = table.banked(index);
+        int code = banked - s / 2 + BIAS;
+        if ((code < 0) || (code >= ESCAPE)) {
+          code = ESCAPE;
+          indices.add((int) index);
+          values.add((byte) banked);
+        }
+        int i = (int) (index >>> 1);
+        packed.put(i, (byte) (packed.get(i) | (code << (4 * (int) (index & 1)))));
+      }
+    }
+
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(table.maxSeeds());
+      out.writeInt(bits);
+      out.writeLong(positions);
+      out.writeInt(indices.size());
+      out.write(packed.array());
+      for (int i : indices) out.writeInt(i);
+      for (byte v : values) out.writeByte(v);
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Move ordering for the make/unmake searches.
+ *
+ * Moves are tried in the order: the transposition table's best move, then
+ * the principal variation's move if the node is on the previous
+ * iteration's PV (which the table may since have lost), then moves that
+ * earn an extra turn, then captures (largest first), then the
+ * two killer moves of the ply (the last moves to cause a cutoff there),
+ * then the rest by history score (the squared depths of the cutoffs each
+ * house has caused). Ties keep the houses' index order.
+ *
+ * An instance holds per-search killers, history and principal variation,
+ * so each search thread needs its own. Ordering a node doesn't allocate.
+ */
+public final class MoveOrdering {
+
+  private static final int TT_MOVE = 1 << 30;
+  private static final int PV_MOVE = TT_MOVE - 1;
+  private static final int EXTRA_TURN = 1 << 29;
+  private static final int CAPTURE = 1 << 28; //plus the seeds captured
+  private static final int KILLER = 1 << 26; //the first killer gets twice this
+  private static final int HISTORY_MAX = KILLER - 1;
+
+  private final int[] killers; //two per ply, -1 if empty
+  private final int[] history = new int[Position.N_PITS];
+  private final int[] scores = new int[SearchBoard.MAX_MOVES];
+  private final int[] pvMoves;
+  private final long[] pvHashes; //the position each PV move is made from
+  private int pvLength;
+
+  /**
+   * @param maxPly the maximum ply ordered, as the search board's size
+   */
+  public MoveOrdering(int maxPly) {
+    killers = new int[2 * maxPly];
+    java.util.Arrays.fill(killers, -1);
+    pvMoves = new int[maxPly];
+    pvHashes = new long[maxPly];
+  }
+
+  /**
+   * Prepares for a new search: forgets the killers, which belong to plies
+   * of the previous root, and halves the history so it follows the game.
+   */
+  public void newSearch() {
+    java.util.Arrays.fill(killers, -1);
+    pvLength = 0;
+    for (int i = 0; i < history.length; ++i) history[i] >>= 1;
+  }
+
+  /**
+   * Forgets everything learned, for reproducible fixed-depth searches.
+   */
+  public void clear() {
+    java.util.Arrays.fill(killers, -1);
+    pvLength = 0;
+    java.util.Arrays.fill(history, 0);
+  }
+
+  /**
+   * Sorts the moves generated for a ply, best first.
+   *
+   * @param board the search board, at the node the moves were generated for
+   * @param ply the ply the moves were generated into
+   * @param n the number of moves generated
+   * @param ttMove the transposition table's best move, or TransTable.NO_MOVE
+   */
+  public void order(SearchBoard board, int ply, int n, int ttMove) {
+    int[] moves = board.moves(ply);
+    int killer1 = killers[2 * ply];
+    int killer2 = killers[2 * ply + 1];
+    int pvMove = ((ply < pvLength) && (pvHashes[ply] == board.hash())) ? pvMoves[ply] : -1;
+    for (int i = 0; i < n; ++i) {
+      int house = moves[i];
+      int captured;
+      int score;
+      if (house == ttMove) {
+        score = TT_MOVE;
+      } else if (house == pvMove) {
+        score = PV_MOVE;
+      } else if (board.landing(house) == (house < Position.SOUTH_STORE ? Position.SOUTH_STORE : Position.NORTH_STORE)) {
+        score = EXTRA_TURN;
+      } else if ((captured = board.captured(house)) > 0) {
+        score = CAPTURE + captured;
+      } else if (house == killer1) {
+        score = 2 * KILLER;
+      } else if (house == killer2) {
+        score = KILLER;
+      } else {
+        score = history[house];
+      }
+
+      //insertion sort, there are at most six moves
+      int j = i;
+      while ((j > 0) && (scores[j - 1] < score)) {
+        scores[j] = scores[j - 1];
+        moves[j] = moves[j - 1];
+        --j;
+      }
+      scores[j] = score;
+      moves[j] = house;
+    }
+  }
+
+  /**
+   * Records a move that caused a beta cutoff.
+   *
+   * @param house the move
+   * @param ply the ply it was made at
+   * @param depth the depth left at the node
+   */
+  public void cutoff(int house, int ply, int depth) {
+    if (killers[2 * ply] != house) {
+      killers[2 * ply + 1] = killers[2 * ply];
+      killers[2 * ply] = house;
+    }
+    history[house] += depth * depth;
+    if (history[house] > HISTORY_MAX) {
+      for (int i = 0; i < history.length; ++i) history[i] >>= 1;
+    }
+  }
+
+  /**
+   * Recovers the principal variation from the root by following the
+   * table's best moves until a position is missing, has no legal best move
+   * (or a collision's) or the game ends, and remembers it to order the
+   * next iteration. The board is left at the root.
+   *
+   * @param board the search board, at the root
+   * @param table the table the search stored its results in
+   * @return the length of the principal variation
+   */
+  public int recordPrincipalVariation(SearchBoard board, TransTable table) {
+    int length = 0;
+    while ((length < pvMoves.length - 1) && !board.terminal()) {
+      long data = table.probe(board.hash());
+      if (data == 0) break;
+      int house = TransTable.move(data);
+      int first = board.southToMove() ? 0 : 7;
+      if ((house < first) || (house >= first + 6) || (board.pit(house) == 0)) break;
+      pvHashes[length] = board.hash();
+      pvMoves[length++] = house;
+      board.make(house);
+    }
+    for (int i = 0; i < length; ++i) board.unmake();
+    pvLength = length;
+    return length;
+  }
+
+  /**
+   * Copies out the principal variation last recorded.
+   *
+   * @param pv the array to copy into, which may be shorter than the line
+   * @return the number of moves copied
+   */
+  public int principalVariation(int[] pv) {
+    int length = Math.min(pvLength, pv.length);
+    System.arraycopy(pvMoves, 0, pv, 0, length);
+    return length;
+  }
+
+  /**
+   * @return the principal variation last recorded, as houses from the
+   * point of view of the board they are played on
+   */
+  public int[] principalVariation() {
+    int[] pv = new int[pvLength];
+    principalVariation(pv);
+    return pv;
+  }
+}
@@ -0,0 +1,19 @@
+/**
+ * A game sink that discards every event, for bulk runs.
+ */
+public final class NullGameSink implements GameSink {
+
+  public static final NullGameSink INSTANCE = new NullGameSink();
+
+  private NullGameSink() {}
+
+  public void start(String agent1, String agent2) {}
+
+  public void move(int player, int house) {}
+
+  public void forfeit(int player) {}
+
+  public void board(int[] board) {}
+
+  public void result(int store1, int store2) {}
+}
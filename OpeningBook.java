@@ -0,0 +1,233 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opening book for Kalah(6,3): the move to play in every position that can
+ * arise within the first N plies of a game, found by a deep offline search.
+ *
+ * Agents always see the board with their own houses at 0-5, so positions
+ * are keyed by the Zobrist hash of the board as the player to move sees
+ * it. A book built from the start position therefore covers both seats,
+ * whichever player moves first.
+ *
+ * File layout (big-endian): int magic, int plies, int depth, int entries,
+ * then the entries' keys as longs in ascending order and their moves as
+ * bytes, so a lookup is a binary search with no allocation.
+ *
+ * Usage: java OpeningBook plies depth file [threads]
+ */
+public class OpeningBook {
+
+  static final int MAGIC = 0x4B4F4231; //"KOB1"
+  static final int NO_MOVE = -1;
+
+  private static OpeningBook shared;
+  private static boolean sharedLoaded;
+
+  private final int plies;
+  private final int depth;
+  private final long[] keys; //ascending
+  private final byte[] moves;
+
+  private OpeningBook(int plies, int depth, long[] keys, byte[] moves) {
+    this.plies = plies;
+    this.depth = depth;
+    this.keys = keys;
+    this.moves = moves;
+  }
+
+  /**
+   * The book named by the mancala.book system property, loaded once per
+   * JVM and shared by every agent.
+   *
+   * @return the shared book, or null if none is configured or it can't be read
+   */
+  public static synchronized OpeningBook shared() {
+    if (!sharedLoaded) {
+      sharedLoaded = true;
+      String path = System.getProperty("mancala.book");
+      if (path != null) {
+        try {
+          shared = load(new File(path));
+        } catch (IOException e) {
+          System.err.println("Opening book " + path + " not loaded: " + e.getMessage());
+        }
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * @return the number of plies from the start the book covers
+   */
+  public int plies() {
+    return plies;
+  }
+
+  /**
+   * @return the search depth the book's moves were found at
+   */
+  public int depth() {
+    return depth;
+  }
+
+  /**
+   * @return the number of positions in the book
+   */
+  public int size() {
+    return keys.length;
+  }
+
+  /**
+   * Looks up a position.
+   *
+   * @param board the board as passed to MancalaAgent.move()
+   * @return the house to play, or NO_MOVE if the position is not in the book
+   */
+  public int move(int[] board) {
+    long key = Zobrist.PIT[0][board[0]];
+    for (int i = 1; i < Position.N_PITS; ++i) key ^= Zobrist.PIT[i][board[i]];
+    int i = Arrays.binarySearch(keys, key);
+    return (i >= 0) ? moves[i] : NO_MOVE;
+  }
+
+  /**
+   * Builds a book by searching every position reachable from the start
+   * within a number of plies (an extra turn is a ply of its own) with
+   * MTDFAgent to a fixed depth. Positions are shared out between threads,
+   * each with its own agent.
+   *
+   * @param plies the number of plies to cover
+   * @param depth the search depth for each position
+   * @param threads the number of search threads
+   * @return the book
+   */
+  public static OpeningBook build(int plies, final int depth, int threads) {
+    //mover's view of each reachable position, by hash
+    HashMap<Long, int[]> positions = new HashMap<Long, int[]>();
+    SearchBoard board = new SearchBoard(plies + 1);
+    board.set(Position.initial());
+    collect(board, plies, 0, positions, new HashMap<Long, Integer>());
+
+    final long[] keys = new long[positions.size()];
+    int n = 0;
+    for (Long key : positions.keySet()) keys[n++] = key;
+    Arrays.sort(keys);
+    final int[][] boards = new int[keys.length][];
+    for (int i = 0; i < keys.length; ++i) boards[i] = positions.get(keys[i]);
+    final byte[] moves = new byte[keys.length];
+    final AtomicInteger next = new AtomicInteger();
+    Thread[] workers = new Thread[Math.max(1, threads)];
+    for (int t = 0; t < workers.length; ++t) {
+      workers[t] = new Thread(new Runnable() {
+        public void run() {
+          MTDFAgent agent = new MTDFAgent();
+          agent.setEndgame(null); //book moves must not depend on the tablebase at hand
+          int i;
+          while ((i = next.getAndIncrement()) < keys.length) {
+            moves[i] = (byte) agent.search(boards[i], depth);
+          }
+        }
+      }, "Book builder");
+      workers[t].start();
+    }
+    for (Thread worker : workers) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("book build interrupted");
+      }
+    }
+    return new OpeningBook(plies, depth, keys, moves);
+  }
+
+  //adds the board seen by the player to move at every non-terminal node within plies of the root
+  private static void collect(SearchBoard b, int plies, int ply, HashMap<Long, int[]> positions,
+      HashMap<Long, Integer> shallowest) {
+    if (b.terminal()) return;
+    int[] view = new int[Position.N_PITS];
+    int offset = b.southToMove() ? 0 : 7;
+    for (int i = 0; i < Position.N_PITS; ++i) view[i] = b.pit((i + offset) % Position.N_PITS);
+    Long key = Zobrist.hash(Position.of(view), true);
+    Integer seen = shallowest.get(key);
+    if ((seen != null) && (seen <= ply)) return; //already expanded at least this far
+    shallowest.put(key, ply);
+    positions.put(key, view);
+    if (ply == plies) return;
+    int n = b.generate(ply, b.southToMove());
+    for (int i = 0; i < n; ++i) {
+      b.make(b.moves(ply)[i]);
+      collect(b, plies, ply + 1, positions, shallowest);
+      b.unmake();
+    }
+  }
+
+  /**
+   * Writes the book to a file.
+   *
+   * @param file the file to write
+   * @throws IOException if the file can't be written
+   */
+  public void save(File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(plies);
+      out.writeInt(depth);
+      out.writeInt(keys.length);
+      for (long key : keys) out.writeLong(key);
+      out.write(moves);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads a book written by save().
+   *
+   * @param file the file to read
+   * @return the book
+   * @throws IOException if the file can't be read or isn't an opening book
+   */
+  public static OpeningBook load(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC) throw new IOException(file + " is not an opening book");
+      int plies = in.readInt();
+      int depth = in.readInt();
+      int n = in.readInt();
+      long[] keys = new long[n];
+      for (int i = 0; i < n; ++i) keys[i] = in.readLong();
+      byte[] moves = new byte[n];
+      in.readFully(moves);
+      return new OpeningBook(plies, depth, keys, moves);
+    } finally {
+      in.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if ((args.length != 3) && (args.length != 4)) {
+      System.err.println("Usage: java OpeningBook plies depth file [threads]");
+      System.exit(1);
+    }
+    int plies = Integer.parseInt(args[0]);
+    int depth = Integer.parseInt(args[1]);
+    int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    long start = System.currentTimeMillis();
+    OpeningBook book = build(plies, depth, threads);
+    book.save(new File(args[2]));
+    System.out.println("Searched " + book.size() + " positions within " + plies + " plies to depth "
+        + depth + " in " + (System.currentTimeMillis() - start) + " ms");
+  }
+}
@@ -0,0 +1,159 @@
+/**
+ * Random playout kernel: plays games of uniformly random moves to the end
+ * as fast as possible, for Monte Carlo rollouts and as a benchmark of raw
+ * game throughput (```java Playout [games] [threads]```).
+ *
+ * A game is played on a private int[] board. Each turn the mover's legal
+ * houses are gathered into a six bit mask without branches, and the k-th
+ * set bit is read from a table, k drawn from a xorshift generator by a
+ * multiply rather than a modulo, so picking a move never loops or retries
+ * (compare RandomAgent's rejection sampling). There is no logging and
+ * nothing is allocated after construction.
+ *
+ * An instance holds its generator's state, so each thread needs its own.
+ */
+public final class Playout {
+
+  //SELECT[(mask << 3) | k] is the index of the k-th set bit of a six bit mask
+  private static final byte[] SELECT = new byte[64 << 3];
+
+  static {
+    for (int mask = 0; mask < 64; ++mask) {
+      int k = 0;
+      for (int i = 0; i < 6; ++i) {
+        if ((mask & (1 << i)) != 0) SELECT[(mask << 3) | k++] = (byte) i;
+      }
+    }
+  }
+
+  private final int[] pits = new int[Position.N_PITS];
+  private long seed;
+
+  /**
+   * @param seed the generator's seed, zero is replaced by a fixed constant
+   */
+  public Playout(long seed) {
+    this.seed = (seed == 0) ? 0x9E3779B97F4A7C15L : seed;
+  }
+
+  /**
+   * Plays a random game out from a search board's position.
+   *
+   * @param board the board to start from, which is left untouched
+   * @return south's final store minus north's
+   */
+  public int play(SearchBoard board) {
+    for (int i = 0; i < Position.N_PITS; ++i) pits[i] = board.pit(i);
+    return run(board.southToMove());
+  }
+
+  /**
+   * Plays a random game out from a board.
+   *
+   * @param board the board to start from, in the game's layout, which is left untouched
+   * @param southToMove the side to move
+   * @return south's final store minus north's
+   */
+  public int play(int[] board, boolean southToMove) {
+    System.arraycopy(board, 0, pits, 0, Position.N_PITS);
+    return run(southToMove);
+  }
+
+  /**
+   * @param diff a final store difference, as returned by play()
+   * @return the result in half points: 2 for a win, 1 for a draw, 0 for a loss
+   */
+  public static int halfPoints(int diff) {
+    return 1 + Integer.signum(diff);
+  }
+
+  private int run(boolean south) {
+    final int[] p = pits;
+    while (true) {
+      //legal houses of each side as bit masks, a pit is non-zero iff its negation is negative
+      int southMask = 0, northMask = 0;
+      for (int i = 0; i < 6; ++i) {
+        southMask |= ((-p[i]) >>> 31) << i;
+        northMask |= ((-p[i + 7]) >>> 31) << i;
+      }
+      if ((southMask == 0) || (northMask == 0)) break;
+
+      int first = south ? 0 : 7;
+      int mask = south ? southMask : northMask;
+      int k = (int) (((next() >>> 32) * Integer.bitCount(mask)) >>> 32);
+      int house = first + SELECT[(mask << 3) | k];
+
+      //sow by whole laps of the ring (see Sowing), the first seeds % 13 pits get one more
+      int store = south ? Position.SOUTH_STORE : Position.NORTH_STORE;
+      int seeds = p[house];
+      int m = Sowing.index(house, seeds);
+      int laps = Sowing.LAPS[m];
+      int extra = seeds - laps * Sowing.RING;
+      int ring = house * Sowing.RING;
+      p[house] = 0;
+      for (int i = 0, touched = Sowing.touched(seeds); i < touched; ++i) {
+        p[Sowing.ORDER[ring + i]] += laps + ((i - extra) >>> 31);
+      }
+      int j = Sowing.LANDING[m];
+
+      //empty house rule
+      if (Sowing.MAY_CAPTURE[m] && (p[j] == 1) && (p[12 - j] > 0)) {
+        p[store] += p[12 - j] + 1;
+        p[j] = 0;
+        p[12 - j] = 0;
+      }
+      if (!Sowing.EXTRA_TURN[m]) south = !south;
+    }
+
+    //the game is over, the remaining seeds go to their owners' stores
+    int diff = p[Position.SOUTH_STORE] - p[Position.NORTH_STORE];
+    for (int i = 0; i < 6; ++i) diff += p[i] - p[i + 7];
+    return diff;
+  }
+
+  //xorshift64*
+  private long next() {
+    seed ^= seed >>> 12;
+    seed ^= seed << 25;
+    seed ^= seed >>> 27;
+    return seed * 0x2545F4914F6CDD1DL;
+  }
+
+  /**
+   * Benchmarks random games from the initial position.
+   *
+   * @param args the number of games per thread (default 10 million) and
+   * the number of threads (default 1)
+   */
+  public static void main(String[] args) throws InterruptedException {
+    final long games = (args.length > 0) ? Long.parseLong(args[0]) : 10000000L;
+    int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+    final int[] initial = Position.initial().toArray();
+    final long[] southWins = new long[threads];
+
+    Thread[] workers = new Thread[threads];
+    long start = System.nanoTime();
+    for (int t = 0; t < threads; ++t) {
+      final int id = t;
+      workers[t] = new Thread(new Runnable() {
+        public void run() {
+          Playout playout = new Playout(id + 1);
+          long wins = 0;
+          for (long g = 0; g < games; ++g) {
+            if (playout.play(initial, true) > 0) ++wins;
+          }
+          southWins[id] = wins;
+        }
+      });
+      workers[t].start();
+    }
+    long wins = 0;
+    for (int t = 0; t < threads; ++t) {
+      workers[t].join();
+      wins += southWins[t];
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.printf("%d games on %d threads in %.2f s: %.0f games/s, south won %.1f%%%n",
+        games * threads, threads, seconds, games * threads / seconds, 100.0 * wins / (games * threads));
+  }
+}
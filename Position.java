@@ -0,0 +1,244 @@
+/**
+ * Immutable packed representation of a Kalah(6,3) game state.
+ *
+ * Each of the 14 pits is held in a 6-bit field (Kalah(6,3) has only 36 seeds,
+ * so no pit can exceed 63). Pits 0-9 are packed into a long and pits 10-13
+ * into an int, giving 84 bits of state in two primitives rather than an int[14].
+ *
+ * Pit layout matches the int[] boards passed to MancalaAgent.move():
+ * houses 0-5 and store 6 belong to the agent (south), houses 7-12 and
+ * store 13 belong to the opponent (north).
+ *
+ * Both sides' moves follow the same rules: seeds are sown anticlockwise
+ * into every pit except the opponent's store, the last seed landing in
+ * the mover's store gives an extra turn, and the last seed landing in an
+ * empty house of the mover's captures it with the opposite house's seeds.
+ * (Before this class the search agents each sowed for themselves, and
+ * their opponent moves dropped seeds only into houses 0-5.)
+ */
+public final class Position {
+
+  public static final int N_PITS = 14;
+  public static final int N_SEEDS = 3 * 12;
+  public static final int SOUTH_STORE = 6;
+  public static final int NORTH_STORE = 13;
+
+  static final int FIELD_BITS = 6;
+  static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+  static final int LO_PITS = 10; //pits held in the long word
+
+  //houses 0-5 occupy the low 36 bits of the long word
+  static final long SOUTH_HOUSES = (1L << (6 * FIELD_BITS)) - 1;
+  //houses 7-9 occupy bits 42-59 of the long word, houses 10-12 the low 18 bits of the int word
+  static final long NORTH_HOUSES_LO = ((1L << (3 * FIELD_BITS)) - 1) << (7 * FIELD_BITS);
+  static final int NORTH_HOUSES_HI = (1 << (3 * FIELD_BITS)) - 1;
+
+  private final long lo;
+  private final int hi;
+
+  /**
+   * Constructs a position directly from its packed words.
+   *
+   * @param lo packed pits 0-9
+   * @param hi packed pits 10-13
+   */
+  public Position(long lo, int hi) {
+    this.lo = lo;
+    this.hi = hi;
+  }
+
+  /**
+   * Packs an int[14] board as supplied by the game harness.
+   *
+   * @param board the board to pack
+   * @return the packed position
+   */
+  public static Position of(int[] board) {
+    long lo = 0;
+    int hi = 0;
+    for (int i = 0; i < LO_PITS; ++i) {
+      lo |= ((long) board[i]) << (FIELD_BITS * i);
+    }
+    for (int i = LO_PITS; i < N_PITS; ++i) {
+      hi |= board[i] << (FIELD_BITS * (i - LO_PITS));
+    }
+    return new Position(lo, hi);
+  }
+
+  /**
+   * The starting position of Kalah(6,3), 3 seeds in every house.
+   *
+   * @return the initial position
+   */
+  public static Position initial() {
+    int[] board = new int[N_PITS];
+    for (int i = 0; i < 6; ++i) board[i] = 3;
+    for (int i = 7; i < 13; ++i) board[i] = 3;
+    return of(board);
+  }
+
+  /**
+   * @return packed pits 0-9
+   */
+  public long lo() {
+    return lo;
+  }
+
+  /**
+   * @return packed pits 10-13
+   */
+  public int hi() {
+    return hi;
+  }
+
+  /**
+   * Number of seeds in a pit.
+   *
+   * @param i the pit index (0-13)
+   * @return the seed count of pit i
+   */
+  public int pit(int i) {
+    return pit(lo, hi, i);
+  }
+
+  /**
+   * Reads a pit directly from packed words.
+   *
+   * @param lo packed pits 0-9
+   * @param hi packed pits 10-13
+   * @param i the pit index (0-13)
+   * @return the seed count of pit i
+   */
+  static int pit(long lo, int hi, int i) {
+    if (i < LO_PITS) {
+      return (int) ((lo >>> (FIELD_BITS * i)) & FIELD_MASK);
+    }
+    return (hi >>> (FIELD_BITS * (i - LO_PITS))) & (int) FIELD_MASK;
+  }
+
+  /**
+   * Unpacks the position into an int[14] board.
+   *
+   * @return a freshly allocated board array
+   */
+  public int[] toArray() {
+    int[] board = new int[N_PITS];
+    for (int i = 0; i < N_PITS; ++i) board[i] = pit(i);
+    return board;
+  }
+
+  /**
+   * Checks if the position is terminal (either row of houses is empty).
+   *
+   * @return true if the game is over, false otherwise
+   */
+  public boolean terminal() {
+    return terminal(lo, hi);
+  }
+
+  static boolean terminal(long lo, int hi) {
+    //if south empty then state is terminal
+    if ((lo & SOUTH_HOUSES) == 0) return true;
+    //if north empty then state is terminal
+    return ((lo & NORTH_HOUSES_LO) == 0) && ((hi & NORTH_HOUSES_HI) == 0);
+  }
+
+  /**
+   * The pit the last seed sown from a house will land in.
+   * Sowing skips the opponent's store, so each lap is 13 pits long.
+   *
+   * @param house the house to sow from (0-5 or 7-12)
+   * @return the landing pit index
+   */
+  public int landing(int house) {
+    return landing(house, pit(house));
+  }
+
+  static int landing(int house, int seeds) {
+    return Sowing.LANDING[Sowing.index(house, seeds)];
+  }
+
+  /**
+   * Plays a move from a house, applying the empty house capture rule.
+   * The mover is determined by the side of the board the house is on.
+   * Does not check for an extra turn; see {@link #landing(int)}.
+   *
+   * @param house the non-empty house to sow from (0-5 or 7-12)
+   * @return the resulting position
+   */
+  public Position sow(int house) {
+    long l = lo;
+    int h = hi;
+    int m = Sowing.index(house, pit(l, h, house));
+    int store = (house < SOUTH_STORE) ? SOUTH_STORE : NORTH_STORE;
+
+    //empty house i and sow its seeds, one add per word (see Sowing)
+    l = clearLo(l, house) + Sowing.LO_ADD[m];
+    h = clearHi(h, house) + Sowing.HI_ADD[m];
+    int j = Sowing.LANDING[m];
+
+    //empty house rule
+    if (Sowing.MAY_CAPTURE[m] && captures(l, h, house, j)) {
+      int captured = pit(l, h, 12 - j) + 1;
+      l = addLo(clearLo(clearLo(l, j), 12 - j), store, captured);
+      h = addHi(clearHi(clearHi(h, j), 12 - j), store, captured);
+    }
+
+    return new Position(l, h);
+  }
+
+  /**
+   * Checks if the last seed of a move triggers the empty house rule:
+   * it landed in a previously empty house on the mover's side opposite
+   * a non-empty house.
+   *
+   * @param l packed pits 0-9 after sowing
+   * @param h packed pits 10-13 after sowing
+   * @param house the house the move was sown from
+   * @param j the landing pit
+   * @return true if the move captures
+   */
+  static boolean captures(long l, int h, int house, int j) {
+    return (j != SOUTH_STORE) && (j != NORTH_STORE) && ((j < SOUTH_STORE) == (house < SOUTH_STORE))
+        && (pit(l, h, j) == 1) && (pit(l, h, 12 - j) > 0);
+  }
+
+  //field arithmetic on the packed words, each helper leaves the other word's pits alone
+
+  static long addLo(long l, int i, int n) {
+    return (i < LO_PITS) ? l + (((long) n) << (FIELD_BITS * i)) : l;
+  }
+
+  static int addHi(int h, int i, int n) {
+    return (i < LO_PITS) ? h : h + (n << (FIELD_BITS * (i - LO_PITS)));
+  }
+
+  static long clearLo(long l, int i) {
+    return (i < LO_PITS) ? l & ~(FIELD_MASK << (FIELD_BITS * i)) : l;
+  }
+
+  static int clearHi(int h, int i) {
+    return (i < LO_PITS) ? h : h & ~((int) FIELD_MASK << (FIELD_BITS * (i - LO_PITS)));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Position)) return false;
+    Position p = (Position) o;
+    return (p.lo == lo) && (p.hi == hi);
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (lo ^ (lo >>> 32)) * 31 + hi;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 12; i > 6; --i) sb.append('\t').append(pit(i));
+    sb.append('\n').append(pit(13)).append("\t\t\t\t\t\t\t").append(pit(6)).append('\n');
+    for (int i = 0; i < 6; ++i) sb.append('\t').append(pit(i));
+    return sb.append('\n').toString();
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Combinatorial (minimal perfect hash) indexer for Kalah(6,3) house
+ * distributions, as used by the endgame tablebases.
+ *
+ * A distribution is the number of seeds in each of the 12 houses, with
+ * the player to move's houses first. Distributions are ranked densely:
+ * all distributions of fewer seeds come first, then distributions of s
+ * seeds in lexicographic order, so the distributions of at most k seeds
+ * map one-to-one onto 0 .. count(k) - 1 with no gaps or keys.
+ */
+public final class PositionIndex {
+
+  public static final int HOUSES = 12;
+
+  //COMPOSITIONS[p][r] is the number of ways to put r seeds in p houses
+  private static final long[][] COMPOSITIONS = new long[HOUSES + 1][Position.N_SEEDS + 1];
+  //OFFSET[s] is the rank of the first distribution of s seeds
+  private static final long[] OFFSET = new long[Position.N_SEEDS + 2];
+  //BELOW[p][r][x] counts the distributions of r seeds in p houses whose first house has fewer than x seeds
+  private static final long[][][] BELOW = new long[HOUSES + 1][Position.N_SEEDS + 1][];
+
+  static {
+    for (int r = 0; r <= Position.N_SEEDS; ++r) COMPOSITIONS[1][r] = 1;
+    for (int p = 2; p <= HOUSES; ++p) {
+      for (int r = 0; r <= Position.N_SEEDS; ++r) {
+        long n = 0;
+        for (int x = 0; x <= r; ++x) n += COMPOSITIONS[p - 1][r - x];
+        COMPOSITIONS[p][r] = n;
+      }
+    }
+    for (int s = 0; s <= Position.N_SEEDS; ++s) {
+      OFFSET[s + 1] = OFFSET[s] + COMPOSITIONS[HOUSES][s];
+    }
+    for (int p = 2; p <= HOUSES; ++p) {
+      for (int r = 0; r <= Position.N_SEEDS; ++r) {
+        BELOW[p][r] = new long[r + 1];
+        for (int x = 1; x <= r; ++x) {
+          BELOW[p][r][x] = BELOW[p][r][x - 1] + COMPOSITIONS[p - 1][r - x + 1];
+        }
+      }
+    }
+  }
+
+  private PositionIndex() {}
+
+  /**
+   * @param maxSeeds the most seeds in the houses
+   * @return the number of distributions of at most maxSeeds seeds
+   */
+  public static long count(int maxSeeds) {
+    return OFFSET[maxSeeds + 1];
+  }
+
+  /**
+   * @param board the search board
+   * @return the number of seeds left in the houses
+   */
+  public static int seeds(SearchBoard board) {
+    return Position.N_SEEDS - board.pit(Position.SOUTH_STORE) - board.pit(Position.NORTH_STORE);
+  }
+
+  /**
+   * Ranks a distribution of seeds over the 12 houses.
+   *
+   * @param houses the seeds in each house, the player to move's first
+   * @return the dense index of the distribution
+   */
+  public static long rank(int[] houses) {
+    int seeds = 0;
+    for (int i = 0; i < HOUSES; ++i) seeds += houses[i];
+    long index = OFFSET[seeds];
+    int remaining = seeds;
+    for (int i = 0; i < HOUSES - 1; ++i) {
+      index += BELOW[HOUSES - i][remaining][houses[i]];
+      remaining -= houses[i];
+    }
+    return index;
+  }
+
+  /**
+   * Ranks the houses of a search board in place, without copying them out.
+   *
+   * @param board the search board, whose player to move's houses come first
+   * @return the dense index of the distribution
+   */
+  public static long rank(SearchBoard board) {
+    boolean south = board.southToMove();
+    int remaining = seeds(board);
+    long index = OFFSET[remaining];
+    for (int i = 0; i < HOUSES - 1; ++i) {
+      int house = (i < 6) ? (south ? i : i + 7) : (south ? i + 1 : i - 6);
+      int n = board.pit(house);
+      index += BELOW[HOUSES - i][remaining][n];
+      remaining -= n;
+    }
+    return index;
+  }
+}
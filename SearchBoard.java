@@ -0,0 +1,243 @@
+/**
+ * Mutable packed board for make/unmake tree search.
+ *
+ * Holds a single Position's packed words and updates them in place as moves
+ * are made, saving the previous words on a preallocated undo stack so a move
+ * can be taken back without copying the board. Legal moves for each ply are
+ * written into a fixed-size per-ply buffer, so walking the search tree does
+ * not allocate.
+ *
+ * The board also tracks the side to move and keeps the position's Zobrist
+ * hash up to date as seeds are sown, so the cost of hashing a node is
+ * proportional to the seeds moved rather than the size of the board.
+ */
+public final class SearchBoard {
+
+  public static final int MAX_MOVES = 6;
+
+  private long lo;
+  private int hi;
+  private long hash;
+  private boolean southToMove;
+
+  private final long[] loUndo;
+  private final int[] hiUndo;
+  private final long[] hashUndo;
+  private final boolean[] sideUndo;
+  private int top;
+
+  private final int[][] moveBuffer;
+
+  /**
+   * Creates a board with undo and move buffers for a search of the given
+   * number of plies. Extra turns are made at the same search depth, so
+   * callers should allow for them when sizing (every extra turn banks at
+   * least one seed, so a line can hold at most {@link Position#N_SEEDS} of them).
+   *
+   * @param maxPly the maximum number of moves made at once
+   */
+  public SearchBoard(int maxPly) {
+    loUndo = new long[maxPly];
+    hiUndo = new int[maxPly];
+    hashUndo = new long[maxPly];
+    sideUndo = new boolean[maxPly];
+    moveBuffer = new int[maxPly][MAX_MOVES];
+  }
+
+  /**
+   * Resets the board to a position with south (houses 0-5) to move
+   * and clears the undo stack.
+   *
+   * @param position the root position
+   */
+  public void set(Position position) {
+    set(position, true);
+  }
+
+  /**
+   * Resets the board to a position and clears the undo stack.
+   *
+   * @param position the root position
+   * @param southToMove true if the player owning houses 0-5 is to move
+   */
+  public void set(Position position, boolean southToMove) {
+    lo = position.lo();
+    hi = position.hi();
+    this.southToMove = southToMove;
+    hash = Zobrist.hash(position, southToMove);
+    top = 0;
+  }
+
+  /**
+   * @return the Zobrist hash of the current position and side to move
+   */
+  public long hash() {
+    return hash;
+  }
+
+  /**
+   * @return true if the player owning houses 0-5 is to move
+   */
+  public boolean southToMove() {
+    return southToMove;
+  }
+
+  /**
+   * @return the current position (allocates, not for use inside the search)
+   */
+  public Position position() {
+    return new Position(lo, hi);
+  }
+
+  /**
+   * Number of seeds in a pit.
+   *
+   * @param i the pit index (0-13)
+   * @return the seed count of pit i
+   */
+  public int pit(int i) {
+    return Position.pit(lo, hi, i);
+  }
+
+  /**
+   * Checks if the current position is terminal (either row of houses is empty).
+   *
+   * @return true if the game is over, false otherwise
+   */
+  public boolean terminal() {
+    return Position.terminal(lo, hi);
+  }
+
+  /**
+   * Writes the legal moves of one side into the move buffer for a ply.
+   *
+   * @param ply the ply (buffer index) to generate into
+   * @param south true to generate houses 0-5, false for houses 7-12
+   * @return the number of legal moves written
+   */
+  public int generate(int ply, boolean south) {
+    int[] moves = moveBuffer[ply];
+    int first = south ? 0 : 7;
+    int n = 0;
+    for (int i = first; i < first + 6; ++i) {
+      if (Position.pit(lo, hi, i) > 0) moves[n++] = i;
+    }
+    return n;
+  }
+
+  /**
+   * The move buffer for a ply, valid up to the count returned by generate().
+   *
+   * @param ply the ply
+   * @return the buffer of houses
+   */
+  public int[] moves(int ply) {
+    return moveBuffer[ply];
+  }
+
+  /**
+   * The pit the last seed sown from a house will land in.
+   *
+   * @param house the house to sow from (0-5 or 7-12)
+   * @return the landing pit index
+   */
+  public int landing(int house) {
+    return Position.landing(house, Position.pit(lo, hi, house));
+  }
+
+  /**
+   * The seeds a move would bank under the empty house rule, worked out
+   * without making it. A last seed can only land in an empty house after
+   * at most one full lap (13 seeds), and the opposite house gains a seed
+   * if sowing wrapped around past it.
+   *
+   * @param house the non-empty house to sow from (0-5 or 7-12)
+   * @return the seeds captured, including the last one sown, or 0 if none
+   */
+  public int captured(int house) {
+    int seeds = Position.pit(lo, hi, house);
+    int j = Position.landing(house, seeds);
+    if ((j == Position.SOUTH_STORE) || (j == Position.NORTH_STORE)
+        || ((j < Position.SOUTH_STORE) != (house < Position.SOUTH_STORE))) {
+      return 0;
+    }
+    if (seeds == 13) return Position.pit(lo, hi, 12 - j) + 2; //lapped back into the emptied house
+    if ((seeds > 13) || (Position.pit(lo, hi, j) > 0)) return 0;
+    int opposite = Position.pit(lo, hi, 12 - j) + ((j < house) ? 1 : 0);
+    return (opposite > 0) ? opposite + 1 : 0;
+  }
+
+  /**
+   * Plays a move in place, applying the empty house capture rule,
+   * and passes the turn unless the mover gets an extra turn.
+   *
+   * @param house the non-empty house to sow from (0-5 or 7-12)
+   * @return true if the mover gets an extra turn (last seed in their own
+   * store and the game is not over), false otherwise
+   */
+  public boolean make(int house) {
+    long l = lo;
+    int h = hi;
+    long key = hash;
+    int seeds = Position.pit(l, h, house);
+    int m = Sowing.index(house, seeds);
+    boolean south = house < Position.SOUTH_STORE;
+    int store = south ? Position.SOUTH_STORE : Position.NORTH_STORE;
+
+    loUndo[top] = l;
+    hiUndo[top] = h;
+    hashUndo[top] = key;
+    sideUndo[top] = southToMove;
+    ++top;
+
+    //empty house i
+    key ^= Zobrist.PIT[house][seeds] ^ Zobrist.PIT[house][0];
+    l = Position.clearLo(l, house);
+    h = Position.clearHi(h, house);
+
+    //sow seeds from i, one add per word, then rehash only the pits sown into
+    long sownLo = l + Sowing.LO_ADD[m];
+    int sownHi = h + Sowing.HI_ADD[m];
+    int ring = house * Sowing.RING;
+    for (int k = 0, touched = Sowing.touched(seeds); k < touched; ++k) {
+      int pit = Sowing.ORDER[ring + k];
+      key ^= Zobrist.PIT[pit][Position.pit(l, h, pit)] ^ Zobrist.PIT[pit][Position.pit(sownLo, sownHi, pit)];
+    }
+    l = sownLo;
+    h = sownHi;
+    int j = Sowing.LANDING[m];
+
+    //empty house rule
+    if (Sowing.MAY_CAPTURE[m] && Position.captures(l, h, house, j)) {
+      int opposite = Position.pit(l, h, 12 - j);
+      int banked = Position.pit(l, h, store);
+      key ^= Zobrist.PIT[j][1] ^ Zobrist.PIT[j][0];
+      key ^= Zobrist.PIT[12 - j][opposite] ^ Zobrist.PIT[12 - j][0];
+      key ^= Zobrist.PIT[store][banked] ^ Zobrist.PIT[store][banked + opposite + 1];
+      l = Position.addLo(Position.clearLo(Position.clearLo(l, j), 12 - j), store, opposite + 1);
+      h = Position.addHi(Position.clearHi(Position.clearHi(h, j), 12 - j), store, opposite + 1);
+    }
+
+    //if move ends the game it can't give an extra turn
+    boolean extraTurn = Sowing.EXTRA_TURN[m] && !Position.terminal(l, h);
+    boolean next = extraTurn ? south : !south;
+    if (next != southToMove) key ^= Zobrist.NORTH_TO_MOVE;
+
+    lo = l;
+    hi = h;
+    hash = key;
+    southToMove = next;
+    return extraTurn;
+  }
+
+  /**
+   * Takes back the most recent move.
+   */
+  public void unmake() {
+    --top;
+    lo = loUndo[top];
+    hi = hiUndo[top];
+    hash = hashUndo[top];
+    southToMove = sideUndo[top];
+  }
+}
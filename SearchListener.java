@@ -0,0 +1,14 @@
+/**
+ * Receives search statistics from an agent after each move.
+ */
+public interface SearchListener {
+
+  /**
+   * Called on the searching thread when an agent has chosen a move.
+   *
+   * @param agent the name of the agent
+   * @param stats the statistics of the search, reused by the agent
+   * for its next move so not to be retained
+   */
+  public void searchFinished(String agent, SearchStats stats);
+}
@@ -0,0 +1,168 @@
+/**
+ * Counters describing what a search did, filled in by an agent when a
+ * SearchListener is attached and left alone (a null check per event)
+ * otherwise.
+ *
+ * An agent reuses one instance, resetting it at the start of every move,
+ * so listeners must copy anything they want to keep.
+ */
+public class SearchStats {
+
+  public static final int MAX_ITERATIONS = 128;
+  public static final int MAX_PV = 64;
+
+  /** nodes visited by the main search */
+  public long nodes;
+  /** nodes visited by quiescence search */
+  public long qnodes;
+  /** transposition table lookups */
+  public long ttProbes;
+  /** lookups that found an entry for the position */
+  public long ttHits;
+  /** entries written */
+  public long ttStores;
+  /** stores that overwrote an entry for a different position */
+  public long ttCollisions;
+  /** children looked up for enhanced transposition cutoffs */
+  public long etcProbes;
+  /** nodes cut off by a child's stored bound without being searched */
+  public long etcCutoffs;
+  /** beta cutoffs by the index of the move that caused them */
+  public final long[] cutoffs = new long[SearchBoard.MAX_MOVES];
+  /** the deepest iteration completed */
+  public int depth;
+  /** zero-width searches made (MTD-f only) */
+  public int passes;
+  /** searches repeated after a failed aspiration or null window */
+  public long researches;
+  /** number of iterations completed */
+  public int iterations;
+  /** elapsed time of each completed iteration */
+  public final long[] iterationNanos = new long[MAX_ITERATIONS];
+  /** the principal variation of the last completed iteration, as houses */
+  public final int[] pv = new int[MAX_PV];
+  /** the number of moves in pv */
+  public int pvLength;
+
+  private long iterationStart;
+
+  /**
+   * Clears all counters for a new search.
+   */
+  public void reset() {
+    nodes = 0;
+    qnodes = 0;
+    ttProbes = 0;
+    ttHits = 0;
+    ttStores = 0;
+    ttCollisions = 0;
+    etcProbes = 0;
+    etcCutoffs = 0;
+    for (int i = 0; i < cutoffs.length; ++i) cutoffs[i] = 0;
+    depth = 0;
+    passes = 0;
+    researches = 0;
+    iterations = 0;
+    pvLength = 0;
+    iterationStart = System.nanoTime();
+  }
+
+  /**
+   * Records a transposition table lookup.
+   *
+   * @param data the packed data word returned by the probe
+   */
+  public void probe(long data) {
+    ++ttProbes;
+    if (data != 0) ++ttHits;
+  }
+
+  /**
+   * Records a transposition table store.
+   *
+   * @param collided true if the store overwrote another position's entry
+   */
+  public void store(boolean collided) {
+    ++ttStores;
+    if (collided) ++ttCollisions;
+  }
+
+  /**
+   * Records an enhanced transposition cutoff attempt.
+   *
+   * @param children the number of children looked up
+   * @param cutoff true if one of them cut the node off
+   */
+  public void transpositionCutoff(int children, boolean cutoff) {
+    etcProbes += children;
+    if (cutoff) ++etcCutoffs;
+  }
+
+  /**
+   * Records a beta cutoff.
+   *
+   * @param move the index (in search order) of the move that caused it,
+   * where the last bucket also counts any later moves
+   */
+  public void cutoff(int move) {
+    ++cutoffs[Math.min(move, cutoffs.length - 1)];
+  }
+
+  /**
+   * Records the end of an iteration, timed from the previous one (or the reset).
+   *
+   * @param depth the depth the iteration searched to
+   */
+  public void iteration(int depth) {
+    long now = System.nanoTime();
+    if (iterations < MAX_ITERATIONS) iterationNanos[iterations] = now - iterationStart;
+    ++iterations;
+    iterationStart = now;
+    this.depth = depth;
+  }
+
+  /**
+   * @return the fraction of probes that found an entry
+   */
+  public double hitRate() {
+    return (ttProbes == 0) ? 0 : (double) ttHits / ttProbes;
+  }
+
+  /**
+   * @return the fraction of cutoffs caused by the first move searched,
+   * a measure of move ordering quality
+   */
+  public double firstMoveCutoffRate() {
+    long total = 0;
+    for (long c : cutoffs) total += c;
+    return (total == 0) ? 0 : (double) cutoffs[0] / total;
+  }
+
+  /**
+   * @return the total time of the completed iterations
+   */
+  public long totalNanos() {
+    long total = 0;
+    for (int i = 0; i < Math.min(iterations, MAX_ITERATIONS); ++i) total += iterationNanos[i];
+    return total;
+  }
+
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("depth ").append(depth).append(", ").append(nodes).append(" nodes");
+    if (qnodes > 0) sb.append(" + ").append(qnodes).append(" qnodes");
+    if (passes > 0) sb.append(", ").append(passes).append(" passes");
+    if (researches > 0) sb.append(", ").append(researches).append(" re-searches");
+    sb.append(String.format(", TT %d probes %.1f%% hits %d stores %d collisions",
+        ttProbes, 100 * hitRate(), ttStores, ttCollisions));
+    if (etcProbes > 0) sb.append(String.format(", ETC %d cutoffs from %d child probes", etcCutoffs, etcProbes));
+    sb.append(", cutoffs by move [");
+    for (int i = 0; i < cutoffs.length; ++i) sb.append((i > 0) ? " " : "").append(cutoffs[i]);
+    sb.append(String.format("] (%.1f%% first), %.1f ms", 100 * firstMoveCutoffRate(), totalNanos() / 1e6));
+    if (pvLength > 0) {
+      sb.append(", pv");
+      for (int i = 0; i < pvLength; ++i) sb.append(' ').append(pv[i]);
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * JMX view of the search statistics aggregated by a SearchStatsMonitor.
+ */
+public interface SearchStatsMXBean {
+
+  public long getSearches();
+
+  public long getNodes();
+
+  public long getQNodes();
+
+  public long getTTProbes();
+
+  public long getTTHits();
+
+  public double getTTHitRate();
+
+  public long getTTStores();
+
+  public long getTTCollisions();
+
+  public long getETCProbes();
+
+  public long getETCCutoffs();
+
+  public long[] getCutoffsByMove();
+
+  public double getFirstMoveCutoffRate();
+
+  public double getAverageDepth();
+
+  public int getLastDepth();
+
+  public long getMTDFPasses();
+
+  public long getResearches();
+
+  public double getAverageSearchMillis();
+
+  public double getNodesPerSecond();
+
+  /**
+   * Clears the totals.
+   */
+  public void reset();
+}
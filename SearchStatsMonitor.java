@@ -0,0 +1,164 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A SearchListener that keeps running totals over every search it hears
+ * about, for watching long tournament runs through JMX (e.g. jconsole).
+ * May be attached to many agents on many threads at once.
+ */
+public class SearchStatsMonitor implements SearchListener, SearchStatsMXBean {
+
+  private long searches;
+  private long nodes;
+  private long qnodes;
+  private long ttProbes;
+  private long ttHits;
+  private long ttStores;
+  private long ttCollisions;
+  private long etcProbes;
+  private long etcCutoffs;
+  private final long[] cutoffs = new long[SearchBoard.MAX_MOVES];
+  private long depthSum;
+  private int lastDepth;
+  private long passes;
+  private long researches;
+  private long nanos;
+
+  /**
+   * Creates a monitor and registers it with the platform MBean server
+   * as mancala:type=SearchStats,name=[name].
+   *
+   * @param name the name to register under, e.g. the agent class
+   * @return the registered monitor
+   */
+  public static SearchStatsMonitor register(String name) {
+    SearchStatsMonitor monitor = new SearchStatsMonitor();
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName("mancala:type=SearchStats,name=" + ObjectName.quote(name));
+      if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+      server.registerMBean(monitor, objectName);
+    } catch (JMException e) {
+      throw new IllegalStateException("could not register search statistics MBean " + name, e);
+    }
+    return monitor;
+  }
+
+  public synchronized void searchFinished(String agent, SearchStats stats) {
+    ++searches;
+    nodes += stats.nodes;
+    qnodes += stats.qnodes;
+    ttProbes += stats.ttProbes;
+    ttHits += stats.ttHits;
+    ttStores += stats.ttStores;
+    ttCollisions += stats.ttCollisions;
+    etcProbes += stats.etcProbes;
+    etcCutoffs += stats.etcCutoffs;
+    for (int i = 0; i < cutoffs.length; ++i) cutoffs[i] += stats.cutoffs[i];
+    depthSum += stats.depth;
+    lastDepth = stats.depth;
+    passes += stats.passes;
+    researches += stats.researches;
+    nanos += stats.totalNanos();
+  }
+
+  public synchronized long getSearches() {
+    return searches;
+  }
+
+  public synchronized long getNodes() {
+    return nodes;
+  }
+
+  public synchronized long getQNodes() {
+    return qnodes;
+  }
+
+  public synchronized long getTTProbes() {
+    return ttProbes;
+  }
+
+  public synchronized long getTTHits() {
+    return ttHits;
+  }
+
+  public synchronized double getTTHitRate() {
+    return (ttProbes == 0) ? 0 : (double) ttHits / ttProbes;
+  }
+
+  public synchronized long getTTStores() {
+    return ttStores;
+  }
+
+  public synchronized long getTTCollisions() {
+    return ttCollisions;
+  }
+
+  public synchronized long getETCProbes() {
+    return etcProbes;
+  }
+
+  public synchronized long getETCCutoffs() {
+    return etcCutoffs;
+  }
+
+  public synchronized long[] getCutoffsByMove() {
+    return cutoffs.clone();
+  }
+
+  public synchronized double getFirstMoveCutoffRate() {
+    long total = 0;
+    for (long c : cutoffs) total += c;
+    return (total == 0) ? 0 : (double) cutoffs[0] / total;
+  }
+
+  public synchronized double getAverageDepth() {
+    return (searches == 0) ? 0 : (double) depthSum / searches;
+  }
+
+  public synchronized int getLastDepth() {
+    return lastDepth;
+  }
+
+  public synchronized long getMTDFPasses() {
+    return passes;
+  }
+
+  public synchronized long getResearches() {
+    return researches;
+  }
+
+  public synchronized double getAverageSearchMillis() {
+    return (searches == 0) ? 0 : nanos / 1e6 / searches;
+  }
+
+  public synchronized double getNodesPerSecond() {
+    return (nanos == 0) ? 0 : (nodes + qnodes) * 1e9 / nanos;
+  }
+
+  public synchronized void reset() {
+    searches = 0;
+    nodes = 0;
+    qnodes = 0;
+    ttProbes = 0;
+    ttHits = 0;
+    ttStores = 0;
+    ttCollisions = 0;
+    etcProbes = 0;
+    etcCutoffs = 0;
+    for (int i = 0; i < cutoffs.length; ++i) cutoffs[i] = 0;
+    depthSum = 0;
+    lastDepth = 0;
+    passes = 0;
+    researches = 0;
+    nanos = 0;
+  }
+
+  public synchronized String toString() {
+    return String.format("%d searches, depth %.1f, %.0f ms/search, %.0f nodes/s, TT hit rate %.1f%%, %d collisions, %d ETC cutoffs, %.1f%% first-move cutoffs",
+        searches, getAverageDepth(), getAverageSearchMillis(), getNodesPerSecond(), 100 * getTTHitRate(), ttCollisions,
+        etcCutoffs, 100 * getFirstMoveCutoffRate());
+  }
+}
@@ -0,0 +1,287 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Strong solver for Kalah(6,3).
+ *
+ * Computes the exact final score difference, with perfect play by both
+ * sides, of the start position and of every position reachable from it
+ * within a number of plies. Each position is solved with MTD(f) over
+ * exact scores: zero-window alpha-beta searches that run to the end of
+ * the game, cut short by the endgame tablebase (-Dmancala.endgame) once
+ * few enough seeds are left, and remembered in a DiskTransTable.
+ *
+ * Solver bounds don't depend on a search depth, so the table keeps them
+ * forever; its depth field holds the log of the nodes behind a result,
+ * so that expensive results are the ones kept.
+ *
+ * Progress is saved in a directory: the table file, which is written back
+ * to disk every minute and on exit, and a log of solved positions. A run
+ * that is interrupted picks up from both, skipping solved positions and
+ * reusing every bound that reached the disk. Positions are solved deepest
+ * first, so the table is full of their results by the time their parents
+ * (and finally the start position) are searched.
+ *
+ * Usage: java -Dmancala.endgame=endgame.tb Solver [plies] [ttMegabytes] [dir]
+ */
+public class Solver {
+
+  private static final int MAX_PLY = 1024; //far longer than any game
+  private static final long CHECKPOINT_MILLIS = 60 * 1000;
+  private static final long CHECKPOINT_NODES = (1L << 20) - 1; //clock polled every 2^20 nodes
+
+  private final DiskTransTable table;
+  private final EndgameTable endgame;
+  private final SearchBoard board = new SearchBoard(MAX_PLY);
+  private long nodes;
+  private long checkpoint = System.currentTimeMillis();
+
+  /**
+   * @param table the table to keep bounds in
+   * @param endgame the tablebase to stop searching at, or null to search to the end
+   */
+  public Solver(DiskTransTable table, EndgameTable endgame) {
+    this.table = table;
+    this.endgame = endgame;
+  }
+
+  /**
+   * @return the nodes searched since the solver was created
+   */
+  public long nodes() {
+    return nodes;
+  }
+
+  /**
+   * Solves a position.
+   *
+   * @param position the position
+   * @param southToMove true if the player owning houses 0-5 is to move
+   * @return the mover's final store minus the opponent's, with perfect play
+   */
+  public int solve(Position position, boolean southToMove) {
+    int value, beta;
+    int lowerbound = -Position.N_SEEDS;
+    int upperbound = Position.N_SEEDS;
+    board.set(position, southToMove);
+
+    //MTD(f), starting from a draw
+    value = 0;
+    while (lowerbound < upperbound) {
+      beta = Math.max(value, lowerbound + 1);
+      value = negamax(beta - 1, beta, 0);
+      if (value < beta) {
+        upperbound = value;
+      } else {
+        lowerbound = value;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Writes the table back to disk if a minute has passed since the last
+   * checkpoint, so a single long solve loses at most that much work.
+   */
+  private void checkpoint() {
+    long now = System.currentTimeMillis();
+    if (now - checkpoint >= CHECKPOINT_MILLIS) {
+      table.force();
+      checkpoint = now;
+    }
+  }
+
+  /**
+   * Fail-soft alpha-beta search to the end of the game, with scores from
+   * the point of view of the player to move.
+   *
+   * @param alpha the lower bound of the window
+   * @param beta the upper bound of the window
+   * @param ply the number of moves made from the root
+   * @return the value if within the window, otherwise a bound on it
+   */
+  private int negamax(int alpha, int beta, int ply) {
+    int value, score, house, n, lowerbound, upperbound, bestMove = TransTable.NO_MOVE;
+    int[] moves;
+    long hash = board.hash();
+    long before = nodes++;
+    if ((nodes & CHECKPOINT_NODES) == 0) checkpoint();
+
+    //base case
+    if (board.terminal()) {
+      score = 0;
+      for (int i = 0; i < 7; ++i) score += board.pit(i);
+      for (int i = 7; i < 14; ++i) score -= board.pit(i);
+      return board.southToMove() ? score : -score;
+    }
+
+    //few enough seeds left to look up the exact outcome
+    if ((endgame != null) && endgame.covers(board)) {
+      score = endgame.finalDifference(board);
+      return board.southToMove() ? score : -score;
+    }
+
+    //trans table lookup, every bound is exact so the window can always be narrowed
+    long data = table.probe(hash);
+    if (data != 0) {
+      lowerbound = TransTable.lower(data);
+      upperbound = TransTable.upper(data);
+      if ((lowerbound >= beta) || (lowerbound == upperbound)) return lowerbound;
+      if (upperbound <= alpha) return upperbound;
+      alpha = Math.max(alpha, lowerbound);
+      beta = Math.min(beta, upperbound);
+      bestMove = TransTable.move(data);
+    } else {
+      lowerbound = -Position.N_SEEDS;
+      upperbound = Position.N_SEEDS;
+    }
+
+    //recursive, the previous best move first
+    n = board.generate(ply, board.southToMove());
+    moves = board.moves(ply);
+    for (int i = 1; i < n; ++i) {
+      if (moves[i] == bestMove) {
+        moves[i] = moves[0];
+        moves[0] = bestMove;
+      }
+    }
+    value = Integer.MIN_VALUE;
+    int a = alpha;
+    for (int i = 0; i < n; ++i) {
+      house = moves[i];
+      if (board.make(house)) {
+        score = negamax(a, beta, ply + 1); //extra turn, same mover
+      } else {
+        score = -negamax(-beta, -a, ply + 1);
+      }
+      board.unmake();
+      if (score > value) {
+        value = score;
+        bestMove = house;
+      }
+      a = Math.max(a, value);
+      if (a >= beta) break;
+    }
+
+    //store the tightened bounds, with the log of the work done as the depth
+    if (value <= alpha) {
+      upperbound = Math.min(upperbound, value);
+    } else if (value >= beta) {
+      lowerbound = Math.max(lowerbound, value);
+    } else {
+      lowerbound = value;
+      upperbound = value;
+    }
+    int work = 64 - Long.numberOfLeadingZeros(nodes - before);
+    table.store(hash, work, lowerbound, upperbound, bestMove);
+    return value;
+  }
+
+  /**
+   * Lists the distinct positions reachable from the start within a number
+   * of plies (an extra turn is a ply of its own), deepest first.
+   *
+   * @param plies the number of plies
+   * @return the positions and sides to move, each encoded as a line key
+   */
+  static ArrayList<String> reachable(int plies) {
+    SearchBoard b = new SearchBoard(plies + 1);
+    HashSet<String> seen = new HashSet<String>();
+    ArrayList<String> frontier = new ArrayList<String>();
+    ArrayList<String> all = new ArrayList<String>();
+    String start = key(Position.initial(), true);
+    seen.add(start);
+    frontier.add(start);
+    for (int ply = 0; ply < plies; ++ply) {
+      all.addAll(0, frontier);
+      ArrayList<String> next = new ArrayList<String>();
+      for (String k : frontier) {
+        b.set(position(k), k.endsWith("S"));
+        if (b.terminal()) continue;
+        int n = b.generate(0, b.southToMove());
+        for (int i = 0; i < n; ++i) {
+          b.make(b.moves(0)[i]);
+          String child = key(b.position(), b.southToMove());
+          if (seen.add(child)) next.add(child);
+          b.unmake();
+        }
+      }
+      frontier = next;
+    }
+    all.addAll(0, frontier);
+    return all;
+  }
+
+  //a position and side to move as it appears in the log, e.g. "3,3,3,3,3,3,0,3,3,3,3,3,3,0 S"
+  static String key(Position position, boolean southToMove) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < Position.N_PITS; ++i) {
+      if (i > 0) sb.append(',');
+      sb.append(position.pit(i));
+    }
+    return sb.append(southToMove ? " S" : " N").toString();
+  }
+
+  static Position position(String key) {
+    String[] pits = key.substring(0, key.indexOf(' ')).split(",");
+    int[] board = new int[Position.N_PITS];
+    for (int i = 0; i < Position.N_PITS; ++i) board[i] = Integer.parseInt(pits[i]);
+    return Position.of(board);
+  }
+
+  public static void main(String[] args) throws IOException {
+    int plies = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+    int ttMegabytes = (args.length > 1) ? Integer.parseInt(args[1]) : 1024;
+    File dir = new File((args.length > 2) ? args[2] : ".");
+    dir.mkdirs();
+    File logFile = new File(dir, "solved.txt");
+
+    final DiskTransTable table = new DiskTransTable(new File(dir, "solver.tt"), ttMegabytes);
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      public void run() {
+        table.force(); //checkpoint on ^C
+      }
+    });
+    Solver solver = new Solver(table, Endgame.shared());
+
+    //positions solved by earlier runs
+    HashSet<String> solved = new HashSet<String>();
+    if (logFile.exists()) {
+      BufferedReader in = new BufferedReader(new FileReader(logFile));
+      try {
+        String line;
+        while ((line = in.readLine()) != null) {
+          int value = line.lastIndexOf(' ');
+          if (value > 0) solved.add(line.substring(0, value));
+        }
+      } finally {
+        in.close();
+      }
+    }
+
+    ArrayList<String> positions = reachable(plies);
+    System.out.println(positions.size() + " positions within " + plies + " plies, "
+        + solved.size() + " already solved");
+    PrintWriter log = new PrintWriter(new FileWriter(logFile, true));
+    long start = System.currentTimeMillis();
+    try {
+      for (String k : positions) {
+        if (solved.contains(k)) continue;
+        int value = solver.solve(position(k), k.endsWith("S"));
+        log.println(k + " " + value);
+        log.flush();
+        System.out.println(k + " " + value + " (" + solver.nodes() + " nodes, "
+            + (System.currentTimeMillis() - start) / 1000 + " s)");
+      }
+    } finally {
+      log.close();
+      table.force();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Precomputed sowing tables, indexed by (house, seeds) via index().
+ *
+ * Sowing s seeds from a house drops one in each of the 13 pits of the
+ * mover's ring (every pit but the opponent's store, ending with the house
+ * itself) s / 13 times over, then one more in each of the first s % 13.
+ * Since no pit can exceed 63 seeds, the whole sowing is one add of a
+ * precomputed increment to each packed word, so a move costs a lookup
+ * instead of a loop over its seeds. The tables also give the landing pit,
+ * the number of full laps, whether the move earns an extra turn and
+ * whether it can capture at all (it lands in one of the mover's houses
+ * without lapping the board, so only the landing house's contents decide).
+ *
+ * The ring order lets callers that track per-pit state (the Zobrist hash,
+ * an int[] board) visit just the pits a move touches.
+ */
+final class Sowing {
+
+  static final int RING = 13; //pits sown by a full lap
+  private static final int MAX_SEEDS = Position.N_SEEDS;
+  private static final int STRIDE = MAX_SEEDS + 1;
+
+  /** packed increment of pits 0-9, to add after clearing the house */
+  static final long[] LO_ADD = new long[Position.N_PITS * STRIDE];
+  /** packed increment of pits 10-13 */
+  static final int[] HI_ADD = new int[Position.N_PITS * STRIDE];
+  /** the pit the last seed lands in */
+  static final byte[] LANDING = new byte[Position.N_PITS * STRIDE];
+  /** full laps of the ring */
+  static final byte[] LAPS = new byte[Position.N_PITS * STRIDE];
+  /** the last seed lands in the mover's store */
+  static final boolean[] EXTRA_TURN = new boolean[Position.N_PITS * STRIDE];
+  /** the last seed lands in one of the mover's houses within the first lap */
+  static final boolean[] MAY_CAPTURE = new boolean[Position.N_PITS * STRIDE];
+  /** the pits sown from each house in order, RING per house */
+  static final byte[] ORDER = new byte[Position.N_PITS * RING];
+
+  static {
+    for (int house = 0; house < Position.N_PITS; ++house) {
+      if ((house == Position.SOUTH_STORE) || (house == Position.NORTH_STORE)) continue;
+      boolean south = house < Position.SOUTH_STORE;
+      int skip = south ? Position.NORTH_STORE : Position.SOUTH_STORE;
+      int store = south ? Position.SOUTH_STORE : Position.NORTH_STORE;
+
+      int j = house;
+      for (int k = 0; k < RING; ++k) {
+        do {
+          j = (j == 13) ? 0 : j + 1;
+        } while (j == skip);
+        ORDER[house * RING + k] = (byte) j;
+      }
+
+      for (int seeds = 0; seeds <= MAX_SEEDS; ++seeds) {
+        int i = index(house, seeds);
+        long l = 0;
+        int h = 0;
+        for (int k = 0; k < seeds; ++k) {
+          int pit = ORDER[house * RING + (k % RING)];
+          l = Position.addLo(l, pit, 1);
+          h = Position.addHi(h, pit, 1);
+        }
+        int landing = (seeds == 0) ? house : ORDER[house * RING + ((seeds - 1) % RING)];
+        LO_ADD[i] = l;
+        HI_ADD[i] = h;
+        LANDING[i] = (byte) landing;
+        LAPS[i] = (byte) (seeds / RING);
+        EXTRA_TURN[i] = (seeds > 0) && (landing == store);
+        MAY_CAPTURE[i] = (seeds > 0) && (seeds <= RING) && (landing != store)
+            && ((landing < Position.SOUTH_STORE) == south);
+      }
+    }
+  }
+
+  private Sowing() {}
+
+  /**
+   * @param house the house sown from (0-5 or 7-12)
+   * @param seeds the seeds in it, at most Position.N_SEEDS
+   * @return the index of the move in the tables
+   */
+  static int index(int house, int seeds) {
+    return house * STRIDE + seeds;
+  }
+
+  /**
+   * @param seeds the seeds sown
+   * @return the number of pits that receive a seed
+   */
+  static int touched(int seeds) {
+    return (seeds < RING) ? seeds : RING;
+  }
+}
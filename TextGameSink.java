@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the human-readable game transcript of the original harness,
+ * streaming each event to a writer as it happens. The writer is flushed
+ * at the end of each game; wrap it in a BufferedWriter for file or
+ * console output.
+ */
+public class TextGameSink implements GameSink {
+
+  private final Writer out;
+  private String agent1;
+  private String agent2;
+
+  /**
+   * @param out the writer to stream the transcript to
+   */
+  public TextGameSink(Writer out) {
+    this.out = out;
+  }
+
+  public void start(String agent1, String agent2) {
+    this.agent1 = agent1;
+    this.agent2 = agent2;
+  }
+
+  public void move(int player, int house) {
+    write(((player == 1) ? agent1 : agent2) + " plays move " + house + "\n");
+  }
+
+  public void forfeit(int player) {
+    write("Illegal move! Forfeit!\n");
+  }
+
+  /**
+   * Writes the board in the form:
+   *            Agent2
+   *    12  11  10  9   8   7
+   *13                          6
+   *    0   1   2   3   4   5
+   *            Agent1
+   */
+  public void board(int[] board) {
+    try {
+      out.write("\t\t\t");
+      out.write(agent2);
+      out.write('\n');
+      for (int i = 12; i > 6; --i) {
+        out.write('\t');
+        out.write(Integer.toString(board[i]));
+      }
+      out.write('\n');
+      out.write(Integer.toString(board[13]));
+      out.write("\t\t\t\t\t\t\t");
+      out.write(Integer.toString(board[6]));
+      out.write('\n');
+      for (int i = 0; i < 6; ++i) {
+        out.write('\t');
+        out.write(Integer.toString(board[i]));
+      }
+      out.write("\n\t\t\t");
+      out.write(agent1);
+      out.write('\n');
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public void result(int store1, int store2) {
+    write("Game Over!\nFinal Board\n");
+    if (store1 > store2) {
+      write(agent1 + " wins: " + store1 + " to " + store2 + "\n");
+    } else if (store1 < store2) {
+      write(agent2 + " wins: " + store2 + " to " + store1 + "\n");
+    } else {
+      write("Match drawn: 18 all\n");
+    }
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void write(String s) {
+    try {
+      out.write(s);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/**
+ * Move timer for the iterative deepening agents.
+ *
+ * The search calls poll() at every node. Only every pollInterval-th call
+ * reads the clock (System.nanoTime(), which is monotonic), and once the
+ * budget is spent the timer reports the search as aborted, so the agent
+ * can unwind the iteration in flight and play the best move of the last
+ * completed one. The first iteration is never aborted, so there is always
+ * a move to play.
+ *
+ * Between iterations, startIteration() predicts the cost of the next one
+ * from the last iteration's time and the effective branching factor (the
+ * ratio of the last two iterations' times), and only starts it if it is
+ * expected to finish within the budget.
+ *
+ * A timer that hasn't been started never expires, for fixed-depth searches.
+ */
+public final class TimeManager {
+
+  public static final int POLL_INTERVAL = 1024; //default nodes between clock reads
+  private static final double MIN_BRANCHING = 1.5;
+  private static final double MAX_BRANCHING = 8.0;
+
+  private final int pollInterval;
+  private long start;
+  private long deadline = Long.MAX_VALUE;
+  private boolean running; //false for an unlimited search
+  private boolean abortable; //once an iteration has completed
+  private boolean aborted;
+  private int countdown;
+  private long iterationStart;
+  private long lastIteration;
+  private long previousIteration;
+
+  public TimeManager() {
+    this(POLL_INTERVAL);
+  }
+
+  /**
+   * @param pollInterval the number of nodes between reads of the clock
+   */
+  public TimeManager(int pollInterval) {
+    this.pollInterval = Math.max(1, pollInterval);
+  }
+
+  /**
+   * Starts timing a move.
+   *
+   * @param budgetNanos the time the move may take
+   */
+  public void start(long budgetNanos) {
+    start = System.nanoTime();
+    deadline = start + budgetNanos;
+    running = true;
+    reset();
+  }
+
+  /**
+   * Stops timing, so the next search runs to its depth whatever the clock says.
+   */
+  public void stop() {
+    running = false;
+    reset();
+  }
+
+  private void reset() {
+    abortable = false;
+    aborted = false;
+    countdown = pollInterval;
+    iterationStart = start;
+    lastIteration = 0;
+    previousIteration = 0;
+  }
+
+  /**
+   * Counts a node, reading the clock every pollInterval nodes.
+   *
+   * @return true if the iteration in flight must be abandoned
+   */
+  public boolean poll() {
+    if (--countdown > 0) return aborted;
+    countdown = pollInterval;
+    if (running && abortable && (System.nanoTime() >= deadline)) aborted = true;
+    return aborted;
+  }
+
+  /**
+   * @return true if the iteration in flight has been abandoned
+   */
+  public boolean aborted() {
+    return aborted;
+  }
+
+  /**
+   * Records a completed iteration, after which the search may be aborted.
+   */
+  public void iterationDone() {
+    long now = System.nanoTime();
+    previousIteration = lastIteration;
+    lastIteration = now - iterationStart;
+    iterationStart = now;
+    abortable = true;
+  }
+
+  /**
+   * Decides whether to start another iteration.
+   *
+   * @return true if the next iteration is predicted to finish in time
+   */
+  public boolean startIteration() {
+    if (!running) return true;
+    long now = System.nanoTime();
+    iterationStart = now;
+    return (now + predictNext()) < deadline;
+  }
+
+  /**
+   * @return the predicted time of the next iteration, in nanoseconds
+   */
+  long predictNext() {
+    double branching = (previousIteration > 0) ? (double) lastIteration / previousIteration : MAX_BRANCHING;
+    branching = Math.max(MIN_BRANCHING, Math.min(MAX_BRANCHING, branching));
+    return (long) (lastIteration * branching);
+  }
+}
@@ -0,0 +1,235 @@
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Plays many games between two agent classes concurrently.
+ *
+ * Every game gets freshly constructed agents (MancalaAgent implementations
+ * must have a no-argument constructor) and its own MancalaGame, so games
+ * share no state. Seats alternate between games so that each agent plays
+ * half its games as agent 1, and so moves first in half of them.
+ *
+ * Games run on a fixed pool of platform threads, or on virtual threads
+ * (Java 21+) with the number of games in flight limited by a semaphore,
+ * since the memory-based agents each allocate a transposition table.
+ * Note that time-limited agents search less deeply when games share cores.
+ *
+ * Search statistics from instrumented agents can be sent to a listener per
+ * side, e.g. a SearchStatsMonitor registered with JMX so a long run can be
+ * watched from jconsole.
+ *
+ * Usage: java Tournament AgentA AgentB [games] [parallelism] [virtual] [stats]
+ */
+public class Tournament {
+
+  /**
+   * Aggregated results from agent A's point of view.
+   */
+  public static class Result {
+    public int games;
+    public int wins;
+    public int draws;
+    public int losses;
+    public long scoreSum; //sum of (A's score - B's score)
+    public long scoreSquares;
+    public int minScore = Integer.MAX_VALUE;
+    public int maxScore = Integer.MIN_VALUE;
+    public long nanos;
+
+    void add(int score) {
+      ++games;
+      if (score > 0) {
+        ++wins;
+      } else if (score < 0) {
+        ++losses;
+      } else {
+        ++draws;
+      }
+      scoreSum += score;
+      scoreSquares += (long) score * score;
+      minScore = Math.min(minScore, score);
+      maxScore = Math.max(maxScore, score);
+    }
+
+    /**
+     * @return the mean score difference
+     */
+    public double meanScore() {
+      return (games == 0) ? 0 : (double) scoreSum / games;
+    }
+
+    /**
+     * @return the sample standard deviation of the score difference
+     */
+    public double scoreStdDev() {
+      if (games < 2) return 0;
+      double mean = meanScore();
+      return Math.sqrt((scoreSquares - games * mean * mean) / (games - 1));
+    }
+
+    public String toString() {
+      return String.format("%d games: %d W / %d D / %d L, score difference %.2f +- %.2f (min %d, max %d), %.1f s",
+          games, wins, draws, losses, meanScore(), scoreStdDev(), minScore, maxScore, nanos / 1e9);
+    }
+  }
+
+  private final Class<? extends MancalaAgent> agentA;
+  private final Class<? extends MancalaAgent> agentB;
+  private SearchListener listenerA;
+  private SearchListener listenerB;
+
+  /**
+   * @param agentA the agent class results are reported for
+   * @param agentB the opposing agent class
+   */
+  public Tournament(Class<? extends MancalaAgent> agentA, Class<? extends MancalaAgent> agentB) {
+    this.agentA = agentA;
+    this.agentB = agentB;
+  }
+
+  /**
+   * Sends search statistics from every game's agents to a listener per side.
+   * Listeners are called from many games at once. Agents that aren't
+   * instrumented are left alone.
+   *
+   * @param listenerA the listener for agent A, or null
+   * @param listenerB the listener for agent B, or null
+   */
+  public void setListeners(SearchListener listenerA, SearchListener listenerB) {
+    this.listenerA = listenerA;
+    this.listenerB = listenerB;
+  }
+
+  /**
+   * Plays one game with fresh agents.
+   *
+   * @param aFirst true if agent A takes the agent 1 seat
+   * @return A's score - B's score
+   */
+  int playGame(boolean aFirst) {
+    MancalaAgent a = newAgent(agentA);
+    MancalaAgent b = newAgent(agentB);
+    if ((listenerA != null) && (a instanceof InstrumentedAgent)) {
+      ((InstrumentedAgent) a).setSearchListener(listenerA);
+    }
+    if ((listenerB != null) && (b instanceof InstrumentedAgent)) {
+      ((InstrumentedAgent) b).setSearchListener(listenerB);
+    }
+    if (aFirst) {
+      return new MancalaGame(a, b).play(NullGameSink.INSTANCE);
+    }
+    return -new MancalaGame(b, a).play(NullGameSink.INSTANCE);
+  }
+
+  /**
+   * Plays a number of games concurrently and aggregates the results.
+   *
+   * @param games the number of games
+   * @param parallelism the maximum number of games in flight, values below 1 are taken as 1
+   * @param virtualThreads true to run each game on a virtual thread,
+   * falling back to platform threads where they are unavailable
+   * @return the aggregated results
+   */
+  public Result run(int games, int parallelism, boolean virtualThreads) {
+    parallelism = Math.max(1, parallelism);
+    ExecutorService executor = virtualThreads ? newVirtualThreadExecutor() : null;
+    final Semaphore inFlight = (executor != null) ? new Semaphore(parallelism) : null;
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    Result result = new Result();
+    long start = System.nanoTime();
+    ArrayList<Future<Integer>> scores = new ArrayList<Future<Integer>>();
+    try {
+      for (int g = 0; g < games; ++g) {
+        final boolean aFirst = (g % 2 == 0);
+        scores.add(executor.submit(new Callable<Integer>() {
+          public Integer call() throws InterruptedException {
+            if (inFlight == null) return playGame(aFirst);
+            inFlight.acquire();
+            try {
+              return playGame(aFirst);
+            } finally {
+              inFlight.release();
+            }
+          }
+        }));
+      }
+      for (Future<Integer> score : scores) {
+        result.add(score.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    result.nanos = System.nanoTime() - start;
+    return result;
+  }
+
+  private static MancalaAgent newAgent(Class<? extends MancalaAgent> agent) {
+    try {
+      return agent.getConstructor().newInstance();
+    } catch (Exception e) {
+      throw new IllegalArgumentException(agent.getName() + " has no usable no-argument constructor", e);
+    }
+  }
+
+  //looked up reflectively so the runner still builds and runs on older JDKs
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends MancalaAgent> agentClass(String name) throws ClassNotFoundException {
+    Class<?> agent = Class.forName(name);
+    if (!MancalaAgent.class.isAssignableFrom(agent)) {
+      throw new IllegalArgumentException(name + " is not a MancalaAgent");
+    }
+    return (Class<? extends MancalaAgent>) agent;
+  }
+
+  public static void main(String[] args) throws ClassNotFoundException {
+    if (args.length < 2) {
+      System.err.println("Usage: java Tournament AgentA AgentB [games] [parallelism] [virtual] [stats]");
+      System.exit(1);
+    }
+    int games = (args.length > 2) ? Integer.parseInt(args[2]) : 100;
+    int parallelism = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+    boolean virtual = false;
+    boolean stats = false;
+    for (int i = 4; i < args.length; ++i) {
+      virtual |= args[i].equals("virtual");
+      stats |= args[i].equals("stats");
+    }
+
+    Tournament tournament = new Tournament(agentClass(args[0]), agentClass(args[1]));
+    SearchStatsMonitor monitorA = null;
+    SearchStatsMonitor monitorB = null;
+    if (stats) {
+      monitorA = SearchStatsMonitor.register("A " + args[0]);
+      monitorB = SearchStatsMonitor.register("B " + args[1]);
+      tournament.setListeners(monitorA, monitorB);
+    }
+    System.out.println(args[0] + " vs " + args[1] + ": " + tournament.run(games, parallelism, virtual));
+    if (stats) {
+      System.out.println(args[0] + " searches: " + monitorA);
+      System.out.println(args[1] + " searches: " + monitorB);
+    }
+  }
+}
@@ -0,0 +1,336 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Fixed-size transposition table backed by a single long[].
+ *
+ * Entries are two longs: the full 64-bit Zobrist key and a packed data word
+ * holding the search depth, lower and upper bounds and the best move.
+ * The table is open-addressed by the low bits of the key into power-of-two
+ * many buckets of two entries, so a probe touches half a 64-byte cache line.
+ * The first entry of a bucket is depth-preferred (only replaced by an equal
+ * or deeper search, or by any search once it is from an earlier one), the
+ * second is always-replace, so deep results survive while recent shallow
+ * results still get cached.
+ *
+ * Agents call newSearch() before each move, stamping later stores with a
+ * new generation. Entries from earlier moves (and earlier games, unless the
+ * agent clears the table on reset) are still probed and used as normal, but
+ * give way to any new result, so the table fills with the current game
+ * without throwing away what earlier searches learned. A warmed table can
+ * be saved to a file and loaded by another agent.
+ *
+ * Probes return the packed data word (0 on a miss), which is decoded with the
+ * static accessors, so neither probing nor storing allocates.
+ *
+ * The table may be shared between search threads without locking. Each key
+ * is stored xored with its data word, so an entry torn by a concurrent write
+ * fails the key check on probe and reads as a miss rather than as corrupt
+ * bounds for the wrong position.
+ */
+public final class TransTable {
+
+  public static final int NO_MOVE = 15;
+  public static final int MIN_SCORE = Short.MIN_VALUE;
+  public static final int MAX_SCORE = Short.MAX_VALUE;
+  public static final int MAX_MEGABYTES = 8192; //2^30 longs, the largest power of two a Java array holds
+  public static final int NO_CUTOFF = Integer.MIN_VALUE; //returned by transpositionCutoff() without one
+  public static final int ETC_MIN_DEPTH = 4; //nearer the leaves transpositionCutoff() costs more than it saves
+
+  static final int ENTRY_LONGS = 2;
+  static final int BUCKET_LONGS = 2 * ENTRY_LONGS;
+
+  //data word layout
+  static final int LOWER_SHIFT = 0;
+  static final int UPPER_SHIFT = 16;
+  static final int DEPTH_SHIFT = 32;
+  static final int MOVE_SHIFT = 40;
+  static final int GENERATION_SHIFT = 44;
+  static final long VALID = 1L << 62;
+
+  static final int MAGIC = 0x4B545431; //"KTT1"
+
+  private static TransTable warm;
+  private static boolean warmLoaded;
+
+  private final long[] table;
+  private final long bucketMask;
+  private int generation; //stamped on stores, 0-255
+
+  /**
+   * Creates a table using at most the given amount of memory.
+   *
+   * @param megabytes the table size in MiB, rounded down to a power of two
+   * @throws IllegalArgumentException if megabytes exceeds MAX_MEGABYTES
+   */
+  public TransTable(int megabytes) {
+    if (megabytes > MAX_MEGABYTES) {
+      throw new IllegalArgumentException("transposition table of " + megabytes
+          + " MiB is larger than a Java array can hold, the maximum is " + MAX_MEGABYTES + " MiB");
+    }
+    long bytes = Math.max(1L, (long) megabytes) << 20;
+    long buckets = Long.highestOneBit(bytes / (BUCKET_LONGS * 8));
+    table = new long[(int) (buckets * BUCKET_LONGS)];
+    bucketMask = buckets - 1;
+  }
+
+  private TransTable(long[] table, int generation) {
+    this.table = table;
+    this.bucketMask = table.length / BUCKET_LONGS - 1;
+    this.generation = generation;
+  }
+
+  /**
+   * Creates a table for an agent: a copy of the warmed table named by the
+   * mancala.tt system property (loaded once per JVM, at its saved size) if
+   * there is one, otherwise an empty table.
+   *
+   * @param megabytes the size of an empty table in MiB, rounded down to a power of two
+   * @return the table
+   * @throws IllegalArgumentException if megabytes exceeds MAX_MEGABYTES
+   */
+  public static TransTable create(int megabytes) {
+    TransTable prototype = warmed();
+    if (prototype == null) return new TransTable(megabytes);
+    return new TransTable(prototype.table.clone(), prototype.generation);
+  }
+
+  private static synchronized TransTable warmed() {
+    if (!warmLoaded) {
+      warmLoaded = true;
+      String path = System.getProperty("mancala.tt");
+      if (path != null) {
+        try {
+          warm = load(new File(path));
+        } catch (IOException e) {
+          System.err.println("Transposition table " + path + " not loaded: " + e.getMessage());
+        }
+      }
+    }
+    return warm;
+  }
+
+  /**
+   * Empties every entry.
+   */
+  public void clear() {
+    java.util.Arrays.fill(table, 0L);
+  }
+
+  /**
+   * Starts a new generation, making every entry stored so far preferred
+   * for replacement. Must not be called while a search is running.
+   */
+  public void newSearch() {
+    generation = (generation + 1) & 0xFF;
+  }
+
+  /**
+   * @return the generation stamped on entries stored now
+   */
+  public int generation() {
+    return generation;
+  }
+
+  /**
+   * @return the number of entries the table can hold
+   */
+  public int capacity() {
+    return table.length / ENTRY_LONGS;
+  }
+
+  /**
+   * Looks up a position.
+   *
+   * @param key the Zobrist hash of the position
+   * @return the packed data word, or 0 if the position is not in the table
+   */
+  public long probe(long key) {
+    int i = index(key);
+    long data = table[i + 1];
+    if ((table[i] ^ data) == key) return data;
+    data = table[i + 3];
+    if ((table[i + 2] ^ data) == key) return data;
+    return 0;
+  }
+
+  /**
+   * Enhanced transposition cutoff: looks up every child of a node before
+   * any is searched, since one reached by another order of moves may
+   * already be stored with a bound that refutes the window. Values are
+   * from south's point of view, so a max node is refuted by a child whose
+   * lower bound is at least beta and a min node by one whose upper bound is
+   * at most alpha. A child reached with an extra turn needs an entry as
+   * deep as the node, any other one a ply shallower. Searches only call
+   * it at nodes at least ETC_MIN_DEPTH from the leaves.
+   *
+   * @param board the search board at the node, which is left there
+   * @param moves the node's moves
+   * @param n the number of moves
+   * @param depth the depth left at the node
+   * @param maximising true at a max node
+   * @param alpha the node's lower bound
+   * @param beta the node's upper bound
+   * @return the refuting child's bound, or NO_CUTOFF
+   */
+  public int transpositionCutoff(SearchBoard board, int[] moves, int n, int depth, boolean maximising,
+      int alpha, int beta) {
+    for (int i = 0; i < n; ++i) {
+      boolean extraTurn = board.make(moves[i]);
+      long data = probe(board.hash());
+      board.unmake();
+      if ((data == 0) || (depth(data) < (extraTurn ? depth : depth - 1))) continue;
+      if (maximising && (lower(data) >= beta)) return lower(data);
+      if (!maximising && (upper(data) <= alpha)) return upper(data);
+    }
+    return NO_CUTOFF;
+  }
+
+  /**
+   * Stores a search result, replacing the depth-preferred entry if this
+   * search is at least as deep or that entry is from an earlier generation,
+   * and otherwise the always-replace entry.
+   *
+   * @param key the Zobrist hash of the position
+   * @param depth the depth searched below the position
+   * @param lower the lower bound on the position's value
+   * @param upper the upper bound on the position's value
+   * @param move the best move found, or NO_MOVE
+   * @return true if an entry for a different position was lost to make room
+   */
+  public boolean store(long key, int depth, int lower, int upper, int move) {
+    int i = index(key);
+    long data = pack(depth, lower, upper, move, generation);
+    long deepData = table[i + 1];
+    long deepKey = table[i] ^ deepData;
+    long lastData = table[i + 3];
+    boolean lastOther = (lastData != 0) && ((table[i + 2] ^ lastData) != key);
+    if ((deepKey == key) || (depth >= depth(deepData)) || (generation(deepData) != generation)) {
+      table[i] = key ^ data;
+      table[i + 1] = data;
+      if ((deepKey != key) && (deepData != 0)) {
+        //demote the displaced deep entry to the always-replace slot
+        table[i + 2] = deepKey ^ deepData;
+        table[i + 3] = deepData;
+        return lastOther;
+      }
+      if ((lastData != 0) && !lastOther) {
+        //drop the stale always-replace copy of this position
+        table[i + 2] = 0;
+        table[i + 3] = 0;
+      }
+      return false;
+    }
+    table[i + 2] = key ^ data;
+    table[i + 3] = data;
+    return lastOther;
+  }
+
+  private int index(long key) {
+    return (int) (key & bucketMask) * BUCKET_LONGS;
+  }
+
+  static long pack(int depth, int lower, int upper, int move) {
+    return pack(depth, lower, upper, move, 0);
+  }
+
+  static long pack(int depth, int lower, int upper, int move, int generation) {
+    return VALID
+        | ((long) (clamp(lower) & 0xFFFF) << LOWER_SHIFT)
+        | ((long) (clamp(upper) & 0xFFFF) << UPPER_SHIFT)
+        | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+        | ((long) (move & 0xF) << MOVE_SHIFT)
+        | ((long) (generation & 0xFF) << GENERATION_SHIFT);
+  }
+
+  private static int clamp(int score) {
+    return Math.max(MIN_SCORE, Math.min(MAX_SCORE, score));
+  }
+
+  /**
+   * @param data a packed data word
+   * @return the depth searched
+   */
+  public static int depth(long data) {
+    return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+  }
+
+  /**
+   * @param data a packed data word
+   * @return the lower bound, MIN_SCORE if unbounded
+   */
+  public static int lower(long data) {
+    return (short) (data >>> LOWER_SHIFT);
+  }
+
+  /**
+   * @param data a packed data word
+   * @return the upper bound, MAX_SCORE if unbounded
+   */
+  public static int upper(long data) {
+    return (short) (data >>> UPPER_SHIFT);
+  }
+
+  /**
+   * @param data a packed data word
+   * @return the best move, or NO_MOVE
+   */
+  public static int move(long data) {
+    return (int) (data >>> MOVE_SHIFT) & 0xF;
+  }
+
+  /**
+   * @param data a packed data word
+   * @return the generation the entry was stored in
+   */
+  public static int generation(long data) {
+    return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+  }
+
+  /**
+   * Writes every entry and the current generation to a file.
+   * Must not be called while a search is running.
+   *
+   * @param file the file to write
+   * @throws IOException if the file can't be written
+   */
+  public void save(File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(generation);
+      out.writeInt(table.length);
+      for (long word : table) out.writeLong(word);
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Reads a table written by save(). Its size is that of the saved table.
+   *
+   * @param file the file to read
+   * @return the table
+   * @throws IOException if the file can't be read or isn't a transposition table
+   */
+  public static TransTable load(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC) throw new IOException(file + " is not a transposition table");
+      int generation = in.readInt();
+      int n = in.readInt();
+      if ((n < BUCKET_LONGS) || (Integer.bitCount(n) != 1)) throw new IOException(file + " has a bad table size");
+      long[] table = new long[n];
+      for (int i = 0; i < n; ++i) table[i] = in.readLong();
+      return new TransTable(table, generation & 0xFF);
+    } finally {
+      in.close();
+    }
+  }
+}
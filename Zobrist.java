@@ -0,0 +1,45 @@
+import java.util.Random;
+
+/**
+ * Zobrist hashing keys shared by every agent.
+ *
+ * One random bitstring per (pit, seed count) pair plus one for the side to
+ * move. Keys are drawn from a fixed seed so hashes are stable between runs
+ * and can be used to key data saved to disk.
+ */
+public final class Zobrist {
+
+  private static final long SEED = 0x6B616C6168L; //"kalah"
+
+  /** PIT[i][n] is the key for pit i holding n seeds */
+  static final long[][] PIT = new long[Position.N_PITS][Position.N_SEEDS + 1];
+  /** xored in when north (houses 7-12) is to move */
+  static final long NORTH_TO_MOVE;
+
+  static {
+    Random prng = new Random(SEED);
+    for (int i = 0; i < Position.N_PITS; ++i) {
+      for (int j = 0; j < Position.N_SEEDS + 1; ++j) {
+        PIT[i][j] = prng.nextLong();
+      }
+    }
+    NORTH_TO_MOVE = prng.nextLong();
+  }
+
+  private Zobrist() {}
+
+  /**
+   * Calculates the Zobrist hash of a position from scratch.
+   *
+   * @param position the game state
+   * @param southToMove true if the player owning houses 0-5 is to move
+   * @return the Zobrist hash of the position
+   */
+  public static long hash(Position position, boolean southToMove) {
+    long key = southToMove ? 0 : NORTH_TO_MOVE;
+    for (int i = 0; i < Position.N_PITS; ++i) {
+      key ^= PIT[i][position.pit(i)];
+    }
+    return key;
+  }
+}
@@ -0,0 +1,54 @@
+package mancala;
+
+import java.util.Random;
+
+/**
+ * A fixed corpus of midgame positions shared by the benchmarks.
+ *
+ * Positions are reached by playing seeded random moves (extra turns
+ * included) from the initial position, and are kept only if they are
+ * south to move, not terminal, and some way into the game, so every run
+ * of every benchmark sees the same boards.
+ */
+final class Corpus {
+
+  static final int SIZE = 16;
+  private static final long SEED = 20181020L;
+
+  private static final Position[] POSITIONS = new Position[SIZE];
+
+  static {
+    Random prng = new Random(SEED);
+    SearchBoard board = new SearchBoard(200);
+    int found = 0;
+    while (found < SIZE) {
+      board.set(Position.initial());
+      int plies = 10 + prng.nextInt(10);
+      for (int i = 0; (i < plies) && !board.terminal(); ++i) {
+        int n = board.generate(0, board.southToMove());
+        board.make(board.moves(0)[prng.nextInt(n)]);
+      }
+      if (board.southToMove() && !board.terminal() && (board.pit(6) + board.pit(13) >= 6)) {
+        POSITIONS[found++] = board.position();
+      }
+    }
+  }
+
+  private Corpus() {}
+
+  /**
+   * @return the corpus positions
+   */
+  static Position[] positions() {
+    return POSITIONS.clone();
+  }
+
+  /**
+   * @return the corpus positions as the int[] boards passed to agents
+   */
+  static int[][] boards() {
+    int[][] boards = new int[SIZE][];
+    for (int i = 0; i < SIZE; ++i) boards[i] = POSITIONS[i].toArray();
+    return boards;
+  }
+}
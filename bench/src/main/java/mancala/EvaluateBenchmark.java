@@ -0,0 +1,66 @@
+package mancala;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Static evaluation of the corpus positions by each agent's evaluate().
+ * Scores are per position evaluated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateBenchmark {
+
+  private Position[] positions;
+  private SearchBoard[] boards;
+  private ABAgent abAgent;
+  private ABWMAgent abwmAgent;
+  private MTDFAgent mtdfAgent;
+
+  @Setup
+  public void setup() {
+    positions = Corpus.positions();
+    boards = new SearchBoard[positions.length];
+    for (int i = 0; i < positions.length; ++i) {
+      boards[i] = new SearchBoard(1);
+      boards[i].set(positions[i]);
+    }
+    abAgent = new ABAgent();
+    abwmAgent = new ABWMAgent(1);
+    mtdfAgent = new MTDFAgent(1);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void position(Blackhole bh) {
+    for (Position p : positions) bh.consume(abAgent.evaluate(p));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void searchBoard(Blackhole bh) {
+    for (SearchBoard b : boards) bh.consume(abwmAgent.evaluate(b));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void searchBoardMTDF(Blackhole bh) {
+    for (SearchBoard b : boards) bh.consume(mtdfAgent.evaluate(b));
+  }
+}
@@ -0,0 +1,117 @@
+package mancala;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Node expansion: generating every child of a corpus position, either as
+ * new immutable Positions (as the children() lists of MMAgent and ABAgent
+ * do) or by make/unmake on a SearchBoard (as the memory-based agents do).
+ * sowChildrenLoop is sowChildren with the seed-by-seed sowing loop the
+ * Sowing tables replaced, as a baseline. Scores are per corpus position
+ * expanded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenBenchmark {
+
+  private Position[] positions;
+  private SearchBoard board;
+
+  @Setup
+  public void setup() {
+    positions = Corpus.positions();
+    board = new SearchBoard(1);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void sowChildren(Blackhole bh) {
+    for (Position p : positions) {
+      for (int i = 0; i < 6; ++i) {
+        if (p.pit(i) > 0) {
+          Position child = p.sow(i);
+          bh.consume(child);
+          bh.consume(p.landing(i) == Position.SOUTH_STORE && !child.terminal());
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void sowChildrenLoop(Blackhole bh) {
+    for (Position p : positions) {
+      for (int i = 0; i < 6; ++i) {
+        if (p.pit(i) > 0) {
+          Position child = loopSow(p, i);
+          bh.consume(child);
+          bh.consume(loopLanding(i, p.pit(i)) == Position.SOUTH_STORE && !child.terminal());
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void makeUnmake(Blackhole bh) {
+    for (Position p : positions) {
+      board.set(p);
+      int n = board.generate(0, true);
+      int[] moves = board.moves(0);
+      for (int i = 0; i < n; ++i) {
+        bh.consume(board.make(moves[i]));
+        bh.consume(board.hash());
+        board.unmake();
+      }
+    }
+  }
+
+  //Position.landing() and sow() as they were before the Sowing tables
+
+  private static int loopLanding(int house, int seeds) {
+    if (house < Position.SOUTH_STORE) return (house + seeds) % 13;
+    return ((house - 7 + seeds) % 13 + 7) % Position.N_PITS;
+  }
+
+  private static Position loopSow(Position p, int house) {
+    long l = p.lo();
+    int h = p.hi();
+    int seeds = Position.pit(l, h, house);
+    int skip = (house < Position.SOUTH_STORE) ? Position.NORTH_STORE : Position.SOUTH_STORE;
+    int store = (house < Position.SOUTH_STORE) ? Position.SOUTH_STORE : Position.NORTH_STORE;
+    l = Position.clearLo(l, house);
+    h = Position.clearHi(h, house);
+    int j = house;
+    while (seeds > 0) {
+      j = (j == 13) ? 0 : j + 1;
+      if (j != skip) {
+        --seeds;
+        l = Position.addLo(l, j, 1);
+        h = Position.addHi(h, j, 1);
+      }
+    }
+    if (Position.captures(l, h, house, j)) {
+      int captured = Position.pit(l, h, 12 - j) + 1;
+      l = Position.addLo(Position.clearLo(Position.clearLo(l, j), 12 - j), store, captured);
+      h = Position.addHi(Position.clearHi(Position.clearHi(h, j), 12 - j), store, captured);
+    }
+    return new Position(l, h);
+  }
+}
@@ -0,0 +1,74 @@
+package mancala;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Random playouts: finishing a game of uniformly random moves from each
+ * corpus position, either with the Playout kernel or by driving
+ * RandomAgent through make/unmake on a SearchBoard (as a rollout written
+ * against the existing classes would). Scores are per game played.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayoutBenchmark {
+
+  private Position[] positions;
+  private Playout playout;
+  private SearchBoard board;
+  private RandomAgent agent;
+  private int[] view;
+
+  @Setup
+  public void setup() {
+    positions = Corpus.positions();
+    playout = new Playout(1);
+    board = new SearchBoard(400);
+    agent = new RandomAgent();
+    view = new int[Position.N_PITS];
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void kernel(Blackhole bh) {
+    for (Position p : positions) {
+      board.set(p);
+      bh.consume(playout.play(board));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void randomAgent(Blackhole bh) {
+    for (Position p : positions) {
+      board.set(p);
+      int plies = 0;
+      while (!board.terminal()) {
+        //the agent always plays south, so show north its board turned round
+        boolean south = board.southToMove();
+        for (int i = 0; i < Position.N_PITS; ++i) view[i] = board.pit(south ? i : (i + 7) % Position.N_PITS);
+        int house = agent.move(view);
+        board.make(south ? house : house + 7);
+        ++plies;
+      }
+      bh.consume(board.pit(Position.SOUTH_STORE));
+      for (int i = 0; i < plies; ++i) board.unmake();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package mancala;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full fixed-depth searches of the whole corpus by each agent, serially and
+ * from an empty transposition table. The score is corpus searches per
+ * second; the "nodes" secondary result is the node rate.
+ *
+ * The default depth keeps MMAgent (which doesn't prune) practical; pass
+ * e.g. -p depth=10 to compare the pruning agents at their playing depths.
+ * ABWMAgent can't search deeper than its fixed 12 plies. The memory-based
+ * agents clear their transposition table before every search, which is
+ * included in the score.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+  /**
+   * Node counter reported alongside the primary result.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Nodes {
+    public long nodes;
+
+    @Setup(Level.Iteration)
+    public void clean() {
+      nodes = 0;
+    }
+  }
+
+  //the agents have no common search interface, so adapt each one
+  interface FixedDepth {
+    int search(int[] board, int depth);
+    long nodes();
+  }
+
+  @Param({"MMAgent", "ABAgent", "ABWMAgent", "ABIDAgent", "MTDFAgent"})
+  public String agent;
+
+  @Param({"6"})
+  public int depth;
+
+  //clearing the table is part of every search, so keep it small for shallow depths
+  @Param({"4"})
+  public int ttMegabytes;
+
+  private int[][] boards;
+  private FixedDepth searcher;
+
+  @Setup
+  public void setup() {
+    boards = Corpus.boards();
+    searcher = adapt(agent, ttMegabytes);
+  }
+
+  @Benchmark
+  public int searchCorpus(Nodes counter) {
+    int moves = 0;
+    for (int[] board : boards) {
+      moves += searcher.search(board, depth);
+      counter.nodes += searcher.nodes();
+    }
+    return moves;
+  }
+
+  static FixedDepth adapt(String agent, int ttMegabytes) {
+    if (agent.equals("MMAgent")) {
+      final MMAgent mm = new MMAgent();
+      return new FixedDepth() {
+        public int search(int[] board, int depth) { return mm.search(board, depth); }
+        public long nodes() { return mm.nodes; }
+      };
+    } else if (agent.equals("ABAgent")) {
+      final ABAgent ab = new ABAgent();
+      return new FixedDepth() {
+        public int search(int[] board, int depth) { return ab.search(board, depth); }
+        public long nodes() { return ab.nodes; }
+      };
+    } else if (agent.equals("ABWMAgent")) {
+      final ABWMAgent abwm = new ABWMAgent(ttMegabytes);
+      return new FixedDepth() {
+        public int search(int[] board, int depth) { return abwm.search(board, depth); }
+        public long nodes() { return abwm.nodes; }
+      };
+    } else if (agent.equals("ABIDAgent")) {
+      final ABIDAgent abid = new ABIDAgent(ttMegabytes);
+      return new FixedDepth() {
+        public int search(int[] board, int depth) { return abid.search(board, depth); }
+        public long nodes() { return abid.nodes; }
+      };
+    } else if (agent.equals("MTDFAgent")) {
+      final MTDFAgent mtdf = new MTDFAgent(ttMegabytes);
+      return new FixedDepth() {
+        public int search(int[] board, int depth) { return mtdf.search(board, depth); }
+        public long nodes() { return mtdf.nodes; }
+      };
+    }
+    throw new IllegalArgumentException("unknown agent " + agent);
+  }
+}
@@ -0,0 +1,75 @@
+package mancala;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Transposition table probes (hits and misses) and stores over a table of
+ * the size the agents use, with keys spread over the whole table so that
+ * accesses miss the CPU caches as they would in a deep search.
+ * Scores are per probe or store.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransTableBenchmark {
+
+  private static final int KEYS = 1 << 16;
+
+  @Param({"16"})
+  public int megabytes;
+
+  private TransTable table;
+  private long[] stored;
+  private long[] missing;
+  private int next;
+
+  @Setup
+  public void setup() {
+    Random prng = new Random(1);
+    table = new TransTable(megabytes);
+    stored = new long[KEYS];
+    missing = new long[KEYS];
+    for (int i = 0; i < KEYS; ++i) {
+      stored[i] = prng.nextLong();
+      missing[i] = prng.nextLong();
+      table.store(stored[i], 8, -5, 5, 3);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEYS)
+  public void probeHit(Blackhole bh) {
+    for (int i = 0; i < KEYS; ++i) bh.consume(table.probe(stored[i]));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEYS)
+  public void probeMiss(Blackhole bh) {
+    for (int i = 0; i < KEYS; ++i) bh.consume(table.probe(missing[i]));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(KEYS)
+  public void store() {
+    int depth = (next++) & 0x3F;
+    for (int i = 0; i < KEYS; ++i) table.store(stored[i], depth, -5, 5, i % 6);
+  }
+}
@@ -0,0 +1,63 @@
+package mancala;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Zobrist hashing of the corpus positions from scratch, against the
+ * incremental hash SearchBoard maintains as a move is made and unmade.
+ * Scores are per position hashed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZobristBenchmark {
+
+  private Position[] positions;
+  private SearchBoard[] boards;
+  private int[] firstMoves;
+
+  @Setup
+  public void setup() {
+    positions = Corpus.positions();
+    boards = new SearchBoard[positions.length];
+    firstMoves = new int[positions.length];
+    for (int i = 0; i < positions.length; ++i) {
+      boards[i] = new SearchBoard(1);
+      boards[i].set(positions[i]);
+      boards[i].generate(0, true);
+      firstMoves[i] = boards[i].moves(0)[0];
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void fullHash(Blackhole bh) {
+    for (Position p : positions) bh.consume(Zobrist.hash(p, true));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Corpus.SIZE)
+  public void incrementalMakeUnmake(Blackhole bh) {
+    for (int i = 0; i < boards.length; ++i) {
+      boards[i].make(firstMoves[i]);
+      bh.consume(boards[i].hash());
+      boards[i].unmake();
+    }
+  }
+}